@@ -0,0 +1,149 @@
+package net.servzero.network.packet.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import net.servzero.chat.EnumChatType;
+import net.servzero.network.NetworkHandler;
+import net.servzero.network.packet.Packet;
+import net.servzero.network.packet.in.InPacketChatMessage;
+import net.servzero.network.packet.in.player.InPacketPlayerPosition;
+import net.servzero.network.packet.out.OutPacketChatMessage;
+import net.servzero.network.packet.out.OutPacketChunkData;
+import net.servzero.network.packet.out.entity.OutPacketEntityRelativeMove;
+import net.servzero.network.protocol.EnumProtocol;
+import net.servzero.network.protocol.EnumProtocolDirection;
+import net.servzero.server.world.chunk.Chunk;
+import net.servzero.server.world.generator.NoiseChunkGenerator;
+import net.servzero.server.world.light.LightEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs packets through the real {@link PacketEncoder} and {@link PacketDecoder} of an embedded
+ * channel: clientbound packets are framed and, above the threshold, deflated; serverbound frames
+ * are split, inflated if needed and decoded into packets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PacketCodecBenchmark {
+    private static final String CHAT_JSON = "{\"text\":\"<Player123> hello everyone, how is the build going?\"}";
+
+    // -1 disables compression, 256 is the threshold the server announces on login
+    @Param({"-1", "256"})
+    public int compressionThreshold;
+
+    private EmbeddedChannel encoderChannel;
+    private EmbeddedChannel decoderChannel;
+    private Chunk chunk;
+    private ByteBuf positionFrame;
+    private ByteBuf chatFrame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final PacketEncoder encoder = new PacketEncoder(EnumProtocolDirection.TO_CLIENT);
+        encoder.setCompression(this.compressionThreshold, 6);
+        this.encoderChannel = new EmbeddedChannel(encoder);
+        this.encoderChannel.attr(NetworkHandler.protocolAttributeKey).set(EnumProtocol.PLAY);
+
+        final PacketDecoder decoder = new PacketDecoder(EnumProtocolDirection.TO_SERVER);
+        decoder.setCompressionThreshold(this.compressionThreshold);
+        this.decoderChannel = new EmbeddedChannel(decoder);
+        this.decoderChannel.attr(NetworkHandler.protocolAttributeKey).set(EnumProtocol.PLAY);
+
+        this.chunk = new Chunk(null, 0, 0);
+        new NoiseChunkGenerator(42L).generate(this.chunk);
+        LightEngine.initialize(this.chunk);
+
+        final ByteBuf position = PooledByteBufAllocator.DEFAULT.heapBuffer();
+        PacketDataSerializer.writeVarInt(position, EnumProtocol.PLAY.getPacketId(EnumProtocolDirection.TO_SERVER, new InPacketPlayerPosition()));
+        position.writeDouble(12.5D).writeDouble(64.0D).writeDouble(-3.25D).writeBoolean(true);
+        this.positionFrame = frame(position);
+
+        final ByteBuf chat = PooledByteBufAllocator.DEFAULT.heapBuffer();
+        PacketDataSerializer.writeVarInt(chat, EnumProtocol.PLAY.getPacketId(EnumProtocolDirection.TO_SERVER, new InPacketChatMessage()));
+        PacketDataSerializer.writeString(chat, "hello everyone, how is the build going?");
+        this.chatFrame = frame(chat);
+    }
+
+    // Serverbound frames are small, so they are always sent uncompressed
+    private ByteBuf frame(ByteBuf body) {
+        final ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer();
+        final int dataLengthBytes = this.compressionThreshold >= 0 ? 1 : 0;
+        PacketDataSerializer.writeVarInt(frame, body.readableBytes() + dataLengthBytes);
+        if (dataLengthBytes > 0) {
+            frame.writeByte(0);
+        }
+        frame.writeBytes(body);
+        body.release();
+        return frame;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.encoderChannel.finishAndReleaseAll();
+        this.decoderChannel.finishAndReleaseAll();
+        this.chunk.invalidatePacketData();
+        this.positionFrame.release();
+        this.chatFrame.release();
+    }
+
+    private int encode(Packet<?> packet) {
+        this.encoderChannel.writeOutbound(packet);
+        final ByteBuf frame = this.encoderChannel.readOutbound();
+        final int bytes = frame.readableBytes();
+        frame.release();
+        return bytes;
+    }
+
+    private Object decode(ByteBuf frame) {
+        this.decoderChannel.writeInbound(frame.retainedDuplicate());
+        final Object packet = this.decoderChannel.readInbound();
+        ReferenceCountUtil.release(packet);
+        return packet;
+    }
+
+    @Benchmark
+    public int encodeEntityMove() {
+        return encode(new OutPacketEntityRelativeMove(42, (short) 128, (short) 0, (short) -64, true));
+    }
+
+    @Benchmark
+    public int encodeChatMessage() {
+        return encode(new OutPacketChatMessage(CHAT_JSON, EnumChatType.CHAT));
+    }
+
+    // Served from the chunk's cached body, so this measures framing and compression only
+    @Benchmark
+    public int encodeChunkData() {
+        return encode(new OutPacketChunkData(this.chunk));
+    }
+
+    @Benchmark
+    public Object decodePlayerPosition() {
+        return decode(this.positionFrame);
+    }
+
+    @Benchmark
+    public Object decodeChatMessage() {
+        return decode(this.chatFrame);
+    }
+}
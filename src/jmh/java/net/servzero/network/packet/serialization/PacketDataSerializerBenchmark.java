@@ -0,0 +1,210 @@
+package net.servzero.network.packet.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the serializer's primitives with the byte by byte versions they replaced, which are
+ * kept here as the {@code legacy} baselines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PacketDataSerializerBenchmark {
+    private static final int VALUES = 1024;
+
+    private ByteBuf buffer;
+    private ByteBuf encodedVarInts;
+    private int[] varInts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(42);
+        // Mostly ids and lengths of one or two bytes, with the occasional large value
+        this.varInts = new int[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            this.varInts[i] = random.nextInt(10) < 8 ? random.nextInt(1 << 14) : random.nextInt();
+        }
+
+        this.buffer = PooledByteBufAllocator.DEFAULT.directBuffer(64 * 1024);
+        this.encodedVarInts = PooledByteBufAllocator.DEFAULT.directBuffer(VALUES * 5);
+        for (int value : this.varInts) {
+            PacketDataSerializer.writeVarInt(this.encodedVarInts, value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.buffer.release();
+        this.encodedVarInts.release();
+    }
+
+    @Benchmark
+    public int writeVarIntLegacy() {
+        this.buffer.clear();
+        for (int value : this.varInts) {
+            legacyWriteVarInt(this.buffer, value);
+        }
+        return this.buffer.writerIndex();
+    }
+
+    @Benchmark
+    public int writeVarInt() {
+        this.buffer.clear();
+        for (int value : this.varInts) {
+            PacketDataSerializer.writeVarInt(this.buffer, value);
+        }
+        return this.buffer.writerIndex();
+    }
+
+    @Benchmark
+    public int readVarIntLegacy() {
+        this.encodedVarInts.readerIndex(0);
+        int sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            sum += legacyReadVarInt(this.encodedVarInts);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int readVarInt() {
+        this.encodedVarInts.readerIndex(0);
+        int sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            sum += PacketDataSerializer.readVarInt(this.encodedVarInts);
+        }
+        return sum;
+    }
+
+    // A packet id written the way the encoder used to: through a fresh wrapper per packet
+    @Benchmark
+    public int writePacketIdWrapped() {
+        this.buffer.clear();
+        new PacketDataSerializer(this.buffer).writeVarInt(this.varInts[0]);
+        return this.buffer.writerIndex();
+    }
+
+    @Benchmark
+    public int writePacketIdStatic() {
+        this.buffer.clear();
+        PacketDataSerializer.writeVarInt(this.buffer, this.varInts[0]);
+        return this.buffer.writerIndex();
+    }
+
+    @State(Scope.Thread)
+    public static class StringState {
+        @Param({"Notch", "{\"text\":\"<Player123> hello everyone, how is the build going?\"}", "{\"text\":\"Grüße aus München, schöner Bau! ❤\"}"})
+        public String value;
+
+        private ByteBuf buffer;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.buffer = PooledByteBufAllocator.DEFAULT.directBuffer(4096);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.buffer.release();
+        }
+    }
+
+    @Benchmark
+    public int writeString(StringState state) {
+        state.buffer.clear();
+        PacketDataSerializer.writeString(state.buffer, state.value);
+        return state.buffer.writerIndex();
+    }
+
+    // Encoding straight into the buffer, which loses to the intrinsic getBytes for ASCII text
+    @Benchmark
+    public int writeStringDirectUtf8(StringState state) {
+        state.buffer.clear();
+        final int length = ByteBufUtil.utf8Bytes(state.value);
+        PacketDataSerializer.writeVarInt(state.buffer, length);
+        ByteBufUtil.reserveAndWriteUtf8(state.buffer, state.value, length);
+        return state.buffer.writerIndex();
+    }
+
+    @State(Scope.Thread)
+    public static class LongArrayState {
+        // A 4 bit section's block storage is 256 longs, a section with global ids 832
+        @Param({"256", "832"})
+        public int length;
+
+        private ByteBuf buffer;
+        private long[] values;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.buffer = PooledByteBufAllocator.DEFAULT.directBuffer(this.length * Long.BYTES + 5);
+            this.values = new Random(42).longs(this.length).toArray();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.buffer.release();
+        }
+    }
+
+    @Benchmark
+    public int writeLongArrayLegacy(LongArrayState state) {
+        state.buffer.clear();
+        legacyWriteVarInt(state.buffer, state.values.length);
+        for (long value : state.values) {
+            state.buffer.writeLong(value);
+        }
+        return state.buffer.writerIndex();
+    }
+
+    @Benchmark
+    public int writeLongArray(LongArrayState state) {
+        state.buffer.clear();
+        PacketDataSerializer.writeLongArray(state.buffer, state.values);
+        return state.buffer.writerIndex();
+    }
+
+    private static void legacyWriteVarInt(ByteBuf buffer, int i) {
+        while ((i & -128) != 0) {
+            buffer.writeByte(i & 127 | 128);
+            i >>>= 7;
+        }
+        buffer.writeByte(i);
+    }
+
+    private static int legacyReadVarInt(ByteBuf buffer) {
+        int i = 0;
+        int j = 0;
+        byte b0;
+        do {
+            b0 = buffer.readByte();
+            i |= (b0 & 127) << j++ * 7;
+            if (j > 5) {
+                throw new RuntimeException("VarInt too big");
+            }
+        } while ((b0 & 128) == 128);
+        return i;
+    }
+}
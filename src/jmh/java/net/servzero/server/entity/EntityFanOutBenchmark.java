@@ -0,0 +1,118 @@
+package net.servzero.server.entity;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.servzero.network.NetworkHandler;
+import net.servzero.network.packet.serialization.PacketEncoder;
+import net.servzero.network.protocol.EnumProtocol;
+import net.servzero.network.protocol.EnumProtocolDirection;
+import net.servzero.server.game.EnumDimension;
+import net.servzero.server.game.EnumGameMode;
+import net.servzero.server.player.GameProfile;
+import net.servzero.server.player.Player;
+import net.servzero.server.world.Location;
+import net.servzero.server.world.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * One tick of movement in a crowd where every player sees every other one: each player moves
+ * and turns through {@link Entity#setPositionAndRotation}, the tracker fans the updates out and
+ * every connection encodes and flushes its packets on an embedded channel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityFanOutBenchmark {
+    // Players stand within this many blocks of each other, well inside the tracking range
+    private static final int CROWD_SIZE = 10;
+
+    @Param({"10", "100", "1000"})
+    public int players;
+
+    private Path directory;
+    private World world;
+    private Player[] crowd;
+    private EmbeddedChannel[] channels;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("servzero-bench");
+        this.world = new World("benchmark", EnumDimension.OVERWORLD, this.directory);
+        this.crowd = new Player[this.players];
+        this.channels = new EmbeddedChannel[this.players];
+
+        final Random random = new Random(42);
+        for (int i = 0; i < this.players; i++) {
+            final NetworkHandler handler = new NetworkHandler(EnumProtocolDirection.TO_SERVER);
+            this.channels[i] = new EmbeddedChannel(new PacketEncoder(EnumProtocolDirection.TO_CLIENT), handler);
+            handler.setProtocol(EnumProtocol.PLAY);
+
+            final Player player = new Player(new GameProfile(UUID.randomUUID(), "Bot" + i), handler, EnumGameMode.CREATIVE);
+            handler.setOwner(player);
+            this.world.spawn(player, Location.get(this.world, random.nextDouble() * CROWD_SIZE, 64.0D, random.nextDouble() * CROWD_SIZE, 0.0F, 0.0F));
+            this.crowd[i] = player;
+        }
+
+        // Everyone spawns for everyone once, outside the measurement
+        this.world.getEntityTracker().tick();
+        this.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (EmbeddedChannel channel : this.channels) {
+            channel.finishAndReleaseAll();
+        }
+        this.world.close();
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            // Deepest first, so every directory is empty by the time it is deleted
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private void flush() {
+        for (int i = 0; i < this.players; i++) {
+            this.crowd[i].getNetworkManager().flush();
+            this.channels[i].runPendingTasks();
+            this.channels[i].releaseOutbound();
+        }
+    }
+
+    @Benchmark
+    public void moveAndTrack() {
+        // Step back and forth so the crowd never drifts apart
+        final double dx = (this.step++ & 1) == 0 ? 0.25D : -0.25D;
+        for (Player player : this.crowd) {
+            final Location location = player.getLocation();
+            player.setPositionAndRotation(location.getX() + dx, location.getY(), location.getZ(), location.getYaw() + 5.0F, location.getPitch());
+        }
+        this.world.getEntityTracker().tick();
+        this.flush();
+    }
+}
@@ -0,0 +1,89 @@
+package net.servzero.server.world;
+
+import net.servzero.server.game.EnumDimension;
+import net.servzero.server.world.block.Block;
+import net.servzero.server.world.block.Position;
+import net.servzero.server.world.chunk.Chunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Random block and chunk lookups within the loaded area around spawn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class WorldAccessBenchmark {
+    private static final int RADIUS = 3;
+    private static final int POSITIONS = 4096;
+
+    private Path directory;
+    private World world;
+    private Position[] positions;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Generated chunks go to a throwaway directory instead of the server's world
+        this.directory = Files.createTempDirectory("servzero-bench");
+        this.world = new World("benchmark", EnumDimension.OVERWORLD, this.directory);
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int z = -RADIUS; z <= RADIUS; z++) {
+                this.world.getChunkManager().getChunkNow(x, z);
+            }
+        }
+
+        final Random random = new Random(42);
+        final int size = (RADIUS * 2 + 1) * 16;
+        this.positions = new Position[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            this.positions[i] = Position.get(random.nextInt(size) - RADIUS * 16, random.nextInt(128), random.nextInt(size) - RADIUS * 16);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.world.close();
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            // Deepest first, so every directory is empty by the time it is deleted
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private Position nextPosition() {
+        return this.positions[this.next++ & (POSITIONS - 1)];
+    }
+
+    @Benchmark
+    public Block getBlockAt() {
+        return this.world.getBlockAt(nextPosition());
+    }
+
+    @Benchmark
+    public Chunk getChunkAt() {
+        return this.world.getChunkAt(nextPosition());
+    }
+}
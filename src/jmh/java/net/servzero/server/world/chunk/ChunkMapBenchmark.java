@@ -0,0 +1,73 @@
+package net.servzero.server.world.chunk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chunk lookups with and without the last-hit hint, over a player's view of loaded chunks. Block
+ * access usually asks for the same chunk many times in a row, so the keys come in runs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ChunkMapBenchmark {
+    private static final int RADIUS = 10;
+    private static final int KEYS = 4096;
+
+    // How often each key repeats before the next one; 1 means every lookup asks for another chunk
+    @Param({"1", "4", "64"})
+    public int run;
+
+    private ChunkMap map;
+    private long[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.map = new ChunkMap();
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int z = -RADIUS; z <= RADIUS; z++) {
+                this.map.put(new Chunk(null, x, z));
+            }
+        }
+
+        final Random random = new Random(42);
+        this.keys = new long[KEYS];
+        for (int i = 0; i < KEYS; i += this.run) {
+            final long key = ChunkCoordinate.toKey(random.nextInt(RADIUS * 2 + 1) - RADIUS, random.nextInt(RADIUS * 2 + 1) - RADIUS);
+            for (int j = i; j < Math.min(i + this.run, KEYS); j++) {
+                this.keys[j] = key;
+            }
+        }
+    }
+
+    private long nextKey() {
+        return this.keys[this.next++ & (KEYS - 1)];
+    }
+
+    @Benchmark
+    public Chunk withHint() {
+        return this.map.get(nextKey());
+    }
+
+    @Benchmark
+    public Chunk withoutHint() {
+        return this.map.getWithoutHint(nextKey());
+    }
+}
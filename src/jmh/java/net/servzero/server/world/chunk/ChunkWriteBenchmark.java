@@ -0,0 +1,73 @@
+package net.servzero.server.world.chunk;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import net.servzero.network.packet.serialization.PacketDataSerializer;
+import net.servzero.server.world.generator.NoiseChunkGenerator;
+import net.servzero.server.world.light.LightEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a generated chunk the way the chunk data packet does, without the packet cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 4, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ChunkWriteBenchmark {
+    private Chunk chunk;
+    private ByteBuf buffer;
+    private PacketDataSerializer serializer;
+
+    @State(Scope.Thread)
+    public static class SectionState {
+        // Bedrock and ores, a section at sea level mixing water, sand and stone, and open sky
+        @Param({"0", "3", "8"})
+        public int sectionY;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.chunk = new Chunk(null, 3, -7);
+        new NoiseChunkGenerator(42L).generate(this.chunk);
+        LightEngine.initialize(this.chunk);
+
+        this.buffer = PooledByteBufAllocator.DEFAULT.directBuffer(256 * 1024);
+        this.serializer = new PacketDataSerializer(this.buffer);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.buffer.release();
+    }
+
+    @Benchmark
+    public int writeSection(SectionState state) {
+        this.buffer.clear();
+        this.chunk.getSection(state.sectionY).write(this.serializer);
+        return this.buffer.writerIndex();
+    }
+
+    @Benchmark
+    public int writeChunk() {
+        this.buffer.clear();
+        this.chunk.write(this.serializer);
+        return this.buffer.writerIndex();
+    }
+}
@@ -0,0 +1,213 @@
+package net.servzero.loadtest;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import net.servzero.logger.Logger;
+import net.servzero.network.NetworkHandler;
+import net.servzero.network.packet.Packet;
+import net.servzero.network.packet.in.InPacketChatMessage;
+import net.servzero.network.packet.in.InPacketHandshakeSetProtocol;
+import net.servzero.network.packet.in.InPacketKeepAlive;
+import net.servzero.network.packet.in.InPacketLoginStart;
+import net.servzero.network.packet.in.InPacketTeleportConfirm;
+import net.servzero.network.packet.in.player.InPacketPlayerBlockPlace;
+import net.servzero.network.packet.in.player.InPacketPlayerLook;
+import net.servzero.network.packet.in.player.InPacketPlayerPosition;
+import net.servzero.network.packet.out.OutPacketChatMessage;
+import net.servzero.network.packet.out.OutPacketDisconnect;
+import net.servzero.network.packet.out.OutPacketKeepAlive;
+import net.servzero.network.packet.out.OutPacketLoginDisconnect;
+import net.servzero.network.packet.out.OutPacketLoginSuccess;
+import net.servzero.network.packet.out.OutPacketSetCompression;
+import net.servzero.network.packet.out.player.OutPacketPlayerPositionLook;
+import net.servzero.network.packet.serialization.PacketDecoder;
+import net.servzero.network.packet.serialization.PacketEncoder;
+import net.servzero.network.protocol.EnumProtocol;
+import net.servzero.server.game.EnumBlockFace;
+import net.servzero.server.game.EnumHand;
+import net.servzero.server.world.block.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * One headless player. It logs in like the real client, answers keep alives and teleports, and
+ * once in the world walks, looks around, chats and places blocks at the configured rates. All of
+ * its state lives on its channel's event loop.
+ */
+public class Bot extends SimpleChannelInboundHandler<Packet<?>> {
+    private static final int PROTOCOL_VERSION = 340;
+    // Chat messages carry their send time after this marker; all bots share the JVM's clock
+    private static final String TIMESTAMP_MARKER = "#t";
+    private static final double WALK_SPEED = 4.3D;
+
+    private final String name;
+    private final LoadTestOptions options;
+    private final LoadStatistics statistics;
+    private final long connectStart = System.nanoTime();
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+
+    private Channel channel;
+    private boolean spawned;
+    private double spawnX;
+    private double spawnZ;
+    private double x;
+    private double y;
+    private double z;
+    private float yaw;
+    private float pitch;
+    private double heading;
+
+    public Bot(String name, LoadTestOptions options, LoadStatistics statistics) {
+        this.name = name;
+        this.options = options;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        this.channel = ctx.channel();
+        this.statistics.connected.incrementAndGet();
+
+        // The encoder picks the protocol up when the packet is written, so it can switch in between
+        this.setProtocol(EnumProtocol.HANDSHAKING);
+        this.channel.write(new InPacketHandshakeSetProtocol(PROTOCOL_VERSION, this.options.host, this.options.port, EnumProtocol.LOGIN));
+        this.setProtocol(EnumProtocol.LOGIN);
+        this.channel.writeAndFlush(new InPacketLoginStart(this.name));
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        this.tasks.forEach(task -> task.cancel(false));
+        this.tasks.clear();
+        this.statistics.connected.decrementAndGet();
+        if (this.spawned) {
+            this.statistics.inGame.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        Logger.warn(this.name + " lost its connection: " + cause);
+        ctx.close();
+    }
+
+    private void setProtocol(EnumProtocol protocol) {
+        this.channel.attr(NetworkHandler.protocolAttributeKey).set(protocol);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, Packet<?> packet) {
+        if (packet instanceof OutPacketKeepAlive) {
+            ctx.writeAndFlush(new InPacketKeepAlive(((OutPacketKeepAlive) packet).getId()));
+        } else if (packet instanceof OutPacketChatMessage) {
+            this.handleChat(((OutPacketChatMessage) packet).getMessage());
+        } else if (packet instanceof OutPacketPlayerPositionLook) {
+            this.handlePositionLook((OutPacketPlayerPositionLook) packet);
+        } else if (packet instanceof OutPacketSetCompression) {
+            // Applied before the next frame is decoded, which is the first compressed one
+            final int threshold = ((OutPacketSetCompression) packet).getThreshold();
+            ctx.pipeline().get(PacketDecoder.class).setCompressionThreshold(threshold);
+            ctx.pipeline().get(PacketEncoder.class).setCompression(threshold, Deflater.BEST_SPEED);
+        } else if (packet instanceof OutPacketLoginSuccess) {
+            this.setProtocol(EnumProtocol.PLAY);
+        } else if (packet instanceof OutPacketDisconnect || packet instanceof OutPacketLoginDisconnect) {
+            final String reason = packet instanceof OutPacketDisconnect ? ((OutPacketDisconnect) packet).getMessage() : ((OutPacketLoginDisconnect) packet).getMessage();
+            Logger.warn(this.name + " was kicked: " + reason);
+            this.statistics.kicked.incrementAndGet();
+            ctx.close();
+        }
+    }
+
+    private void handleChat(String message) {
+        final int marker = message.lastIndexOf(TIMESTAMP_MARKER);
+        if (marker < 0) {
+            return;
+        }
+        int end = marker + TIMESTAMP_MARKER.length();
+        while (end < message.length() && Character.isDigit(message.charAt(end))) {
+            end++;
+        }
+        try {
+            final long sent = Long.parseLong(message.substring(marker + TIMESTAMP_MARKER.length(), end));
+            this.statistics.recordChatLatency(System.nanoTime() - sent);
+        } catch (NumberFormatException ignored) {
+            // Someone else's chat that happens to contain the marker
+        }
+    }
+
+    private void handlePositionLook(OutPacketPlayerPositionLook packet) {
+        final byte flags = packet.getFlags();
+        this.x = (flags & 0x01) != 0 ? this.x + packet.getX() : packet.getX();
+        this.y = (flags & 0x02) != 0 ? this.y + packet.getY() : packet.getY();
+        this.z = (flags & 0x04) != 0 ? this.z + packet.getZ() : packet.getZ();
+        this.yaw = (flags & 0x08) != 0 ? this.yaw + packet.getYaw() : packet.getYaw();
+        this.pitch = (flags & 0x10) != 0 ? this.pitch + packet.getPitch() : packet.getPitch();
+        this.channel.writeAndFlush(new InPacketTeleportConfirm(packet.getTeleportId()));
+
+        if (!this.spawned) {
+            this.spawned = true;
+            this.spawnX = this.x;
+            this.spawnZ = this.z;
+            this.heading = ThreadLocalRandom.current().nextDouble(Math.PI * 2);
+            this.statistics.joinLatency.record(System.nanoTime() - this.connectStart);
+            this.statistics.inGame.incrementAndGet();
+
+            this.schedule(this.options.walkRate, this::walk);
+            this.schedule(this.options.lookRate, this::look);
+            this.schedule(this.options.chatRate, this::chat);
+            this.schedule(this.options.placeRate, this::placeBlock);
+        }
+    }
+
+    // Spread over a random phase, so bots that joined in the same tick do not act in lockstep
+    private void schedule(double rate, Runnable action) {
+        if (rate <= 0) {
+            return;
+        }
+        final long period = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        final long delay = ThreadLocalRandom.current().nextLong(period);
+        this.tasks.add(this.channel.eventLoop().scheduleAtFixedRate(action, delay, period, TimeUnit.NANOSECONDS));
+    }
+
+    private void walk() {
+        final double step = WALK_SPEED / this.options.walkRate;
+        final double dx = this.x - this.spawnX;
+        final double dz = this.z - this.spawnZ;
+        if (dx * dx + dz * dz > this.options.radius * this.options.radius) {
+            this.heading = Math.atan2(-dz, -dx);
+        } else {
+            this.heading += (ThreadLocalRandom.current().nextDouble() - 0.5D) * 0.3D;
+        }
+        this.x += Math.cos(this.heading) * step;
+        this.z += Math.sin(this.heading) * step;
+        this.channel.writeAndFlush(new InPacketPlayerPosition(this.x, this.y, this.z, true));
+    }
+
+    private void look() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.yaw = random.nextFloat() * 360.0F;
+        this.pitch = random.nextFloat() * 60.0F - 30.0F;
+        this.channel.writeAndFlush(new InPacketPlayerLook(this.yaw, this.pitch, true));
+    }
+
+    private void chat() {
+        this.channel.writeAndFlush(new InPacketChatMessage("Hello from " + this.name + " " + TIMESTAMP_MARKER + System.nanoTime()));
+        this.statistics.chatsSent.increment();
+    }
+
+    // Onto the ground two blocks ahead, out of the way of the bot's own feet
+    private void placeBlock() {
+        final Position target = Position.get(
+                (int) Math.floor(this.x + Math.cos(this.heading) * 2.0D),
+                (int) Math.floor(this.y) - 1,
+                (int) Math.floor(this.z + Math.sin(this.heading) * 2.0D));
+        this.channel.writeAndFlush(new InPacketPlayerBlockPlace(target, EnumBlockFace.TOP, EnumHand.RIGHT, 0.5F, 1.0F, 0.5F));
+        this.statistics.blocksPlaced.increment();
+    }
+}
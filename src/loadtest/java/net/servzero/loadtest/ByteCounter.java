@@ -0,0 +1,43 @@
+package net.servzero.loadtest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the bytes crossing the socket of every bot. It sits first in the pipeline, so it sees
+ * the compressed frames exactly as they travel over the wire.
+ */
+@ChannelHandler.Sharable
+public class ByteCounter extends ChannelDuplexHandler {
+    private final LongAdder readBytes = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof ByteBuf) {
+            this.readBytes.add(((ByteBuf) msg).readableBytes());
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (msg instanceof ByteBuf) {
+            this.writtenBytes.add(((ByteBuf) msg).readableBytes());
+        }
+        ctx.write(msg, promise);
+    }
+
+    public long getReadBytes() {
+        return readBytes.sum();
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+}
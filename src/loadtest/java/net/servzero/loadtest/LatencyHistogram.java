@@ -0,0 +1,105 @@
+package net.servzero.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A log-linear histogram of nanosecond latencies that any thread can record into. Every power of
+ * two is split into 64 buckets, so a reported percentile is within 1.6% of the recorded value.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Anything slower than about 18 minutes lands in the last bucket
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    private static int indexOf(long value) {
+        final int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    // Highest value that falls into the bucket
+    private static long valueOf(int index) {
+        if (index < SUB_BUCKETS * 2) {
+            return index;
+        }
+        final int shift = (index >> SUB_BUCKET_BITS) - 1;
+        final long mantissa = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        final long value = Math.min(Math.max(nanos, 0L), MAX_VALUE);
+        this.counts.incrementAndGet(indexOf(value));
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Copies the recorded values, optionally starting over. Values recorded while the copy is
+     * taken end up in exactly one of the two intervals.
+     */
+    public Snapshot snapshot(boolean reset) {
+        final long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = reset ? this.counts.getAndSet(i, 0) : this.counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, reset ? this.max.getAndSet(0) : this.max.get());
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getPercentile(double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(this.count * percentile / 100.0D));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return Math.min(valueOf(i), this.max);
+                }
+            }
+            return this.max;
+        }
+
+        /**
+         * p50/p95/p99/max in milliseconds, or a dash if nothing was recorded.
+         */
+        public String format() {
+            if (this.count == 0) {
+                return "-";
+            }
+            return String.format("%.1f/%.1f/%.1f/%.1f ms (%d samples)",
+                    millis(this.getPercentile(50)), millis(this.getPercentile(95)), millis(this.getPercentile(99)), millis(this.max), this.count);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package net.servzero.loadtest;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import net.servzero.logger.Logger;
+import net.servzero.network.packet.serialization.PacketDecoder;
+import net.servzero.network.packet.serialization.PacketEncoder;
+import net.servzero.network.protocol.EnumProtocolDirection;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Connects a crowd of headless {@link Bot bots} to a server and reports how it copes: how long
+ * joining takes, how late broadcasts arrive and how much traffic every player costs. Bots run on
+ * the server's own codec, so the encoder writes serverbound packets and the decoder reads
+ * clientbound ones, skipping everything a bot has no use for.
+ */
+public class LoadGenerator {
+    private final LoadTestOptions options;
+    private final LoadStatistics statistics = new LoadStatistics();
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final AtomicInteger nextBotId = new AtomicInteger();
+
+    // Sampled once a second, the denominator of the per player byte rates
+    private double botSeconds;
+    private long lastReadBytes;
+    private long lastWrittenBytes;
+    private double intervalBotSeconds;
+
+    public LoadGenerator(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        final LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.exit(1);
+            return;
+        }
+        new LoadGenerator(options).run();
+    }
+
+    public void run() {
+        final EventLoopGroup eventLoopGroup;
+        final Class<? extends SocketChannel> channelClass;
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("Bot IO #%d").setDaemon(true).build();
+        if (Epoll.isAvailable()) {
+            eventLoopGroup = new EpollEventLoopGroup(this.options.threads, threadFactory);
+            channelClass = EpollSocketChannel.class;
+        } else {
+            eventLoopGroup = new NioEventLoopGroup(this.options.threads, threadFactory);
+            channelClass = NioSocketChannel.class;
+        }
+
+        final Bootstrap bootstrap = new Bootstrap()
+                .group(eventLoopGroup)
+                .channel(channelClass)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
+                .handler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channels.add(channel);
+                        channel.pipeline()
+                                .addLast("bytes", statistics.bytes)
+                                .addLast("decoder", new PacketDecoder(EnumProtocolDirection.TO_CLIENT, true))
+                                .addLast("encoder", new PacketEncoder(EnumProtocolDirection.TO_SERVER))
+                                .addLast("bot", new Bot("Bot" + nextBotId.getAndIncrement(), options, statistics));
+                    }
+                })
+                .remoteAddress(this.options.host, this.options.port);
+
+        Logger.info("Connecting " + this.options.bots + " bots to " + this.options.host + ":" + this.options.port
+                + " at " + this.options.connectRate + " per second for " + this.options.durationSeconds + " seconds");
+
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.SECONDS.toNanos(this.options.durationSeconds);
+        final long connectInterval = (long) (TimeUnit.SECONDS.toNanos(1) / this.options.connectRate);
+        long nextSample = start + TimeUnit.SECONDS.toNanos(1);
+        int samples = 0;
+        int connecting = 0;
+
+        while (true) {
+            final long now = System.nanoTime();
+            if (now - end >= 0) {
+                break;
+            }
+            // Catch up with the connect schedule, then sleep until the next connect or sample
+            while (connecting < this.options.bots && now - (start + connecting * connectInterval) >= 0) {
+                bootstrap.connect().addListener(future -> {
+                    if (!future.isSuccess()) {
+                        this.statistics.failedConnects.incrementAndGet();
+                    }
+                });
+                connecting++;
+            }
+            if (now - nextSample >= 0) {
+                this.sample();
+                nextSample += TimeUnit.SECONDS.toNanos(1);
+                if (++samples % this.options.reportIntervalSeconds == 0) {
+                    this.report(samples);
+                }
+            }
+
+            long wakeUp = Math.min(nextSample, end);
+            if (connecting < this.options.bots) {
+                wakeUp = Math.min(wakeUp, start + connecting * connectInterval);
+            }
+            LockSupport.parkNanos(wakeUp - System.nanoTime());
+        }
+
+        this.summarize();
+        this.channels.close().awaitUninterruptibly();
+        eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+    }
+
+    private void sample() {
+        final int connected = this.statistics.connected.get();
+        this.botSeconds += connected;
+        this.intervalBotSeconds += connected;
+    }
+
+    private void report(int seconds) {
+        final long readBytes = this.statistics.bytes.getReadBytes();
+        final long writtenBytes = this.statistics.bytes.getWrittenBytes();
+        Logger.info(String.format("[%ds] %d in game, %d connected, %d failed, %d kicked | chat latency p50/p95/p99/max %s | %s in, %s out per player per second",
+                seconds,
+                this.statistics.inGame.get(),
+                this.statistics.connected.get(),
+                this.statistics.failedConnects.get(),
+                this.statistics.kicked.get(),
+                this.statistics.intervalChatLatency.snapshot(true).format(),
+                formatBytes(readBytes - this.lastReadBytes, this.intervalBotSeconds),
+                formatBytes(writtenBytes - this.lastWrittenBytes, this.intervalBotSeconds)));
+        this.lastReadBytes = readBytes;
+        this.lastWrittenBytes = writtenBytes;
+        this.intervalBotSeconds = 0;
+    }
+
+    private void summarize() {
+        Logger.info("Summary of " + this.options.durationSeconds + " seconds with " + this.options.bots + " bots:");
+        Logger.info("  joined:        " + this.statistics.joinLatency.snapshot(false).getCount() + ", "
+                + this.statistics.failedConnects.get() + " failed to connect, " + this.statistics.kicked.get() + " kicked");
+        Logger.info("  join latency:  p50/p95/p99/max " + this.statistics.joinLatency.snapshot(false).format());
+        Logger.info("  chat latency:  p50/p95/p99/max " + this.statistics.chatLatency.snapshot(false).format()
+                + " for " + this.statistics.chatsSent.sum() + " messages sent");
+        Logger.info("  blocks placed: " + this.statistics.blocksPlaced.sum());
+        Logger.info("  traffic:       " + formatBytes(this.statistics.bytes.getReadBytes(), this.botSeconds) + " in, "
+                + formatBytes(this.statistics.bytes.getWrittenBytes(), this.botSeconds) + " out per player per second");
+    }
+
+    private static String formatBytes(long bytes, double botSeconds) {
+        if (botSeconds <= 0) {
+            return "-";
+        }
+        return String.format("%.2f kB", bytes / botSeconds / 1024.0D);
+    }
+}
@@ -0,0 +1,28 @@
+package net.servzero.loadtest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Everything the bots measure, shared by all of them and read by the reporter.
+ */
+public class LoadStatistics {
+    final ByteCounter bytes = new ByteCounter();
+    // From the connect call until the server's first position packet puts the bot into the world
+    final LatencyHistogram joinLatency = new LatencyHistogram();
+    // From a bot sending a chat message until another bot receives its broadcast
+    final LatencyHistogram chatLatency = new LatencyHistogram();
+    final LatencyHistogram intervalChatLatency = new LatencyHistogram();
+
+    final AtomicInteger connected = new AtomicInteger();
+    final AtomicInteger inGame = new AtomicInteger();
+    final AtomicInteger failedConnects = new AtomicInteger();
+    final AtomicInteger kicked = new AtomicInteger();
+    final LongAdder chatsSent = new LongAdder();
+    final LongAdder blocksPlaced = new LongAdder();
+
+    void recordChatLatency(long nanos) {
+        this.chatLatency.record(nanos);
+        this.intervalChatLatency.record(nanos);
+    }
+}
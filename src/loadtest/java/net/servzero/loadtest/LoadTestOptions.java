@@ -0,0 +1,101 @@
+package net.servzero.loadtest;
+
+/**
+ * Command line options of the load generator, given as {@code --name value}. Rates are actions
+ * per bot per second; a rate of zero turns the action off.
+ */
+public class LoadTestOptions {
+    String host = "127.0.0.1";
+    int port = 25565;
+    int bots = 100;
+    // New connections per second, so a large crowd does not hit the login path all at once
+    double connectRate = 50.0D;
+    int durationSeconds = 60;
+    int reportIntervalSeconds = 10;
+    int threads = 0;
+    // Walking sends a position every tick like the real client does
+    double walkRate = 20.0D;
+    double lookRate = 4.0D;
+    double chatRate = 0.05D;
+    double placeRate = 0.1D;
+    // Bots wander within this many blocks of the spawn
+    double radius = 32.0D;
+
+    public static LoadTestOptions parse(String[] args) {
+        final LoadTestOptions options = new LoadTestOptions();
+        for (int i = 0; i < args.length; i++) {
+            final String name = args[i];
+            if (name.equals("--help")) {
+                throw new IllegalArgumentException(usage());
+            }
+            if (!name.startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --name value but got " + name + "\n" + usage());
+            }
+            final String value = args[++i];
+            try {
+                switch (name) {
+                    case "--host":
+                        options.host = value;
+                        break;
+                    case "--port":
+                        options.port = Integer.parseInt(value);
+                        break;
+                    case "--bots":
+                        options.bots = Integer.parseInt(value);
+                        break;
+                    case "--connect-rate":
+                        options.connectRate = Double.parseDouble(value);
+                        break;
+                    case "--duration":
+                        options.durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "--report-interval":
+                        options.reportIntervalSeconds = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        options.threads = Integer.parseInt(value);
+                        break;
+                    case "--walk-rate":
+                        options.walkRate = Double.parseDouble(value);
+                        break;
+                    case "--look-rate":
+                        options.lookRate = Double.parseDouble(value);
+                        break;
+                    case "--chat-rate":
+                        options.chatRate = Double.parseDouble(value);
+                        break;
+                    case "--place-rate":
+                        options.placeRate = Double.parseDouble(value);
+                        break;
+                    case "--radius":
+                        options.radius = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + name + "\n" + usage());
+                }
+            } catch (NumberFormatException exception) {
+                throw new IllegalArgumentException("Not a number for " + name + ": " + value);
+            }
+        }
+        if (options.bots <= 0 || options.connectRate <= 0 || options.durationSeconds <= 0 || options.reportIntervalSeconds <= 0) {
+            throw new IllegalArgumentException("--bots, --connect-rate, --duration and --report-interval must be positive");
+        }
+        return options;
+    }
+
+    public static String usage() {
+        return "Options (defaults in brackets):\n" +
+                "  --host <address>          server to connect to [127.0.0.1]\n" +
+                "  --port <port>             [25565]\n" +
+                "  --bots <count>            bots to connect [100]\n" +
+                "  --connect-rate <n>        new connections per second [50]\n" +
+                "  --duration <seconds>      how long to run, ramp-up included [60]\n" +
+                "  --report-interval <s>     seconds between reports [10]\n" +
+                "  --threads <count>         event loop threads, 0 for Netty's default [0]\n" +
+                "  --walk-rate <n>           position updates per bot per second [20]\n" +
+                "  --look-rate <n>           rotation updates per bot per second [4]\n" +
+                "  --chat-rate <n>           chat messages per bot per second [0.05]\n" +
+                "  --place-rate <n>          block placements per bot per second [0.1]\n" +
+                "  --radius <blocks>         how far bots wander from the spawn [32]";
+    }
+}
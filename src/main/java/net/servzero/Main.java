@@ -7,5 +7,15 @@ public class Main {
         Server server = Server.getInstance();
 
         server.mainThread.start();
+
+        // Let the main thread finish its tick and save the world before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                server.mainThread.join();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }, "Shutdown thread"));
     }
 }
@@ -1,12 +1,21 @@
 package net.servzero.network;
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.PlatformDependent;
 import net.servzero.logger.Logger;
 import net.servzero.network.packet.Packet;
 import net.servzero.network.packet.PacketHandler;
+import net.servzero.network.packet.in.InPacketKeepAlive;
+import net.servzero.network.packet.out.OutPacketDisconnect;
+import net.servzero.network.packet.serialization.PacketDecoder;
+import net.servzero.network.packet.serialization.PacketEncoder;
 import net.servzero.network.protocol.EnumProtocol;
 import net.servzero.network.protocol.EnumProtocolDirection;
 import net.servzero.server.Server;
@@ -14,19 +23,38 @@ import net.servzero.server.player.Player;
 import net.servzero.server.player.PlayerLogoutManager;
 
 import java.net.SocketAddress;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class NetworkHandler extends SimpleChannelInboundHandler<Packet<PacketHandler>> {
     private Player owner = null;
 
     private Channel channel;
     private SocketAddress address;
-    private PacketHandler packetHandler;
+    private volatile PacketHandler packetHandler;
     public static final AttributeKey<EnumProtocol> protocolAttributeKey = AttributeKey.valueOf("protocol");
     private EnumProtocolDirection protocolDirection;
     private EnumProtocol protocol;
 
     private int protocolVersion;
 
+    private static final int FLUSH_THRESHOLD_BYTES = 64 * 1024;
+    private final Queue<Packet<?>> outboundQueue = PlatformDependent.newMpscQueue();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    // Size hints of the play packets queued since the last drain
+    private final AtomicInteger queuedBytes = new AtomicInteger();
+    private final Runnable drainTask = this::drainOutboundQueue;
+    // Reading pauses once this many play packets wait for the main thread and resumes at half of it
+    private static final int INBOUND_PAUSE_THRESHOLD = Integer.getInteger("servzero.network.inbound-pause", 256);
+    // What a single read can still decode after the pause; a client above it is flooding
+    private static final int INBOUND_DISCONNECT_THRESHOLD = Integer.getInteger("servzero.network.inbound-limit", 4096);
+    private final Queue<Packet<PacketHandler>> inboundQueue = PlatformDependent.newMpscQueue();
+    private final AtomicInteger inboundQueueSize = new AtomicInteger();
+    private final AtomicBoolean inboundPaused = new AtomicBoolean(false);
+    // Reading also stops while a packet that switches the protocol is on its way out
+    private volatile boolean switchingProtocol;
+
     public NetworkHandler(EnumProtocolDirection protocolDirection) {
         this.protocolDirection = protocolDirection;
     }
@@ -44,49 +72,180 @@ public class NetworkHandler extends SimpleChannelInboundHandler<Packet<PacketHan
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected void channelRead0(ChannelHandlerContext ctx, Packet<PacketHandler> packet) {
         if (isConnected()) {
-            if (this.packetHandler != null) {
-                packet.handle(this.packetHandler);
+            // Play packets touch the world, so they are handled on the main thread during the next tick
+            if (this.protocol == EnumProtocol.PLAY && !((Object) packet instanceof InPacketKeepAlive)) {
+                this.queueInboundPacket(packet);
             } else {
-                Logger.error("Could not handle packet: No packet handler found");
+                this.handlePacket(packet);
+            }
+        }
+    }
+
+    private void queueInboundPacket(Packet<PacketHandler> packet) {
+        final int size = this.inboundQueueSize.incrementAndGet();
+        if (size > INBOUND_DISCONNECT_THRESHOLD) {
+            // Everything after the first packet over the limit is dropped while the channel closes
+            if (size == INBOUND_DISCONNECT_THRESHOLD + 1) {
+                Logger.warn("Disconnecting " + this.address + ": " + INBOUND_DISCONNECT_THRESHOLD + " packets waiting to be handled");
+                this.channel.writeAndFlush(new OutPacketDisconnect("Too many packets")).addListener(ChannelFutureListener.CLOSE);
+            }
+            return;
+        }
+        this.inboundQueue.add(packet);
+        if (size >= INBOUND_PAUSE_THRESHOLD && this.inboundPaused.compareAndSet(false, true)) {
+            this.updateAutoRead();
+        }
+    }
+
+    private void handlePacket(Packet<PacketHandler> packet) {
+        if (this.packetHandler != null) {
+            packet.handle(this.packetHandler);
+        } else {
+            Logger.error("Could not handle packet: No packet handler found");
+        }
+    }
+
+    /**
+     * Handles at most {@code budget} queued play packets. Must be called from the main thread;
+     * anything left over is handled in the next tick.
+     */
+    public void processInboundPackets(int budget) {
+        Packet<PacketHandler> packet;
+        while (budget-- > 0 && (packet = this.inboundQueue.poll()) != null) {
+            this.inboundQueueSize.decrementAndGet();
+            try {
+                this.handlePacket(packet);
+            } catch (Exception exception) {
+                Logger.error("Could not handle packet " + packet.getClass().getSimpleName() + " of " + this.address + ": " + exception);
+                exception.printStackTrace();
             }
         }
+
+        if (this.inboundQueueSize.get() <= INBOUND_PAUSE_THRESHOLD / 2 && this.inboundPaused.compareAndSet(true, false)) {
+            this.updateAutoRead();
+        }
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         super.channelInactive(ctx);
+        Packet<?> queued;
+        while ((queued = this.outboundQueue.poll()) != null) {
+            ReferenceCountUtil.release(queued);
+        }
         if (this.owner != null) {
             // TODO: Add leave
-            Server.getInstance().unregisterPlayer(owner);
-            PlayerLogoutManager.handleLogout(owner);
+            final Player player = this.owner;
+            // Queued after the login task, which skips players whose channel is already closed
+            Server.getInstance().execute(() -> {
+                if (Server.getInstance().unregisterPlayer(player)) {
+                    PlayerLogoutManager.handleLogout(player);
+                }
+            });
         }
     }
 
+    /**
+     * Queues the packet for this connection. Play packets are written by one event loop task and
+     * flushed once per tick, or as soon as {@link #FLUSH_THRESHOLD_BYTES} of them are waiting;
+     * packets of the other protocols and protocol switches go out right away.
+     */
     public void sendPacket(Packet<?> packet) {
         if (this.isConnected()) {
             final EnumProtocol packetProtocol = EnumProtocol.getByPacket(packet);
             final EnumProtocol currentProtocol = this.channel.attr(NetworkHandler.protocolAttributeKey).get();
+            final boolean switchesProtocol = packetProtocol != currentProtocol;
 
-            if (packetProtocol != currentProtocol) {
-                this.channel.config().setAutoRead(false);
+            if (switchesProtocol) {
+                this.switchingProtocol = true;
+                this.updateAutoRead();
             }
 
-            Runnable toExecute = () -> {
-                if (packetProtocol != currentProtocol) {
-                    this.setProtocol(packetProtocol);
+            // Read before queueing, the event loop may write and release the packet right after
+            final int size = packet.getSizeHint();
+            this.outboundQueue.add(packet);
+
+            if (switchesProtocol || packetProtocol != EnumProtocol.PLAY) {
+                if (this.channel.eventLoop().inEventLoop()) {
+                    this.drainOutboundQueue();
+                } else {
+                    this.scheduleDrain();
                 }
+            } else if (this.queuedBytes.addAndGet(size) >= FLUSH_THRESHOLD_BYTES || !this.isConnected()) {
+                // Once closed, channelInactive may have emptied the queue before the add above and
+                // flush() skips the channel, so the event loop has to drain and release the packet
+                this.scheduleDrain();
+            }
+        } else {
+            // Cached packets like chunk data hold pooled buffers
+            ReferenceCountUtil.release(packet);
+        }
+    }
 
-                this.channel.writeAndFlush(packet);
-            };
+    private void scheduleDrain() {
+        if (this.drainScheduled.compareAndSet(false, true)) {
+            this.channel.eventLoop().execute(this.drainTask);
+        }
+    }
 
-            if (this.channel.eventLoop().inEventLoop()) {
-                toExecute.run();
-            } else {
-                this.channel.eventLoop().execute(toExecute);
+    private void drainOutboundQueue() {
+        this.drainScheduled.set(false);
+        this.queuedBytes.set(0);
+
+        boolean written = false;
+        Packet<?> packet;
+        while ((packet = this.outboundQueue.poll()) != null) {
+            if (!this.isConnected()) {
+                ReferenceCountUtil.release(packet);
+                continue;
+            }
+
+            final EnumProtocol packetProtocol = EnumProtocol.getByPacket(packet);
+            if (packetProtocol != this.channel.attr(NetworkHandler.protocolAttributeKey).get()) {
+                this.setProtocol(packetProtocol);
             }
+
+            this.channel.write(packet, this.channel.voidPromise());
+            written = true;
+
+            final ChannelOutboundBuffer outboundBuffer = this.channel.unsafe().outboundBuffer();
+            if (outboundBuffer != null && outboundBuffer.totalPendingWriteBytes() >= FLUSH_THRESHOLD_BYTES) {
+                this.channel.flush();
+                written = false;
+            }
+        }
+
+        if (written) {
+            this.channel.flush();
+        }
+    }
+
+    /**
+     * Enables or updates compression in the encoder and decoder. Runs on the event loop after any
+     * packet queued before it, so the Set Compression packet itself still goes out uncompressed.
+     */
+    public void setCompression(int threshold, int level) {
+        Runnable toExecute = () -> {
+            ChannelPipeline pipeline = this.channel.pipeline();
+            ((PacketDecoder) pipeline.get("decoder")).setCompressionThreshold(threshold);
+            ((PacketEncoder) pipeline.get("encoder")).setCompression(threshold, level);
+        };
+
+        if (this.channel.eventLoop().inEventLoop()) {
+            toExecute.run();
+        } else {
+            this.channel.eventLoop().execute(toExecute);
+        }
+    }
+
+    /**
+     * Writes and flushes everything queued since the last flush. Called once per tick.
+     */
+    public void flush() {
+        if (this.isConnected() && !this.outboundQueue.isEmpty()) {
+            this.scheduleDrain();
         }
     }
 
@@ -102,7 +261,7 @@ public class NetworkHandler extends SimpleChannelInboundHandler<Packet<PacketHan
         this.channel.close();
     }
 
-    private boolean isConnected() {
+    public boolean isConnected() {
         return this.channel != null && this.channel.isOpen();
     }
 
@@ -124,7 +283,20 @@ public class NetworkHandler extends SimpleChannelInboundHandler<Packet<PacketHan
 
     public void setProtocol(EnumProtocol protocol) {
         this.channel.attr(NetworkHandler.protocolAttributeKey).set(protocol);
-        this.channel.config().setAutoRead(true);
+        this.switchingProtocol = false;
+        this.updateAutoRead();
         this.protocol = protocol;
     }
+
+    /**
+     * The only place that changes autoRead. Runs on the event loop, so the last update always
+     * reflects the latest protocol switch and inbound pause, whichever thread changed them.
+     */
+    private void updateAutoRead() {
+        if (!this.channel.eventLoop().inEventLoop()) {
+            this.channel.eventLoop().execute(this::updateAutoRead);
+            return;
+        }
+        this.channel.config().setAutoRead(!this.switchingProtocol && !this.inboundPaused.get());
+    }
 }
@@ -0,0 +1,72 @@
+package net.servzero.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import net.servzero.logger.Logger;
+import net.servzero.network.packet.EncodedPacket;
+import net.servzero.network.packet.Packet;
+import net.servzero.network.packet.serialization.PacketDataSerializer;
+import net.servzero.network.protocol.EnumProtocol;
+import net.servzero.network.protocol.EnumProtocolDirection;
+import net.servzero.server.player.Player;
+
+import java.util.Collection;
+
+/**
+ * Sends the same packet to many players while serializing it only once. Every recipient gets a
+ * retained slice of one pooled buffer.
+ */
+public class PacketBroadcaster {
+    public static void broadcast(Packet<?> packet, Collection<? extends Player> players) {
+        broadcast(packet, players, null);
+    }
+
+    public static void broadcast(Packet<?> packet, Collection<? extends Player> players, Player except) {
+        final int recipients = players.size() - (except != null && players.contains(except) ? 1 : 0);
+        if (recipients <= 0) {
+            ReferenceCountUtil.release(packet);
+            return;
+        }
+        if (recipients == 1) {
+            for (Player player : players) {
+                if (player != except) {
+                    player.getNetworkManager().sendPacket(packet);
+                }
+            }
+            return;
+        }
+
+        final EnumProtocol protocol = EnumProtocol.getByPacket(packet);
+        final ByteBuf data = encode(protocol, packet);
+        if (data == null) {
+            return;
+        }
+
+        try {
+            for (Player player : players) {
+                if (player != except) {
+                    player.getNetworkManager().sendPacket(new EncodedPacket(protocol, data.retainedSlice()));
+                }
+            }
+        } finally {
+            data.release();
+        }
+    }
+
+    private static ByteBuf encode(EnumProtocol protocol, Packet<?> packet) {
+        final ByteBuf data = PooledByteBufAllocator.DEFAULT.directBuffer(packet.getSizeHint());
+        try {
+            final PacketDataSerializer serializer = new PacketDataSerializer(data);
+            serializer.writeVarInt(protocol.getPacketId(EnumProtocolDirection.TO_CLIENT, packet));
+            packet.write(serializer);
+            return data;
+        } catch (Throwable throwable) {
+            Logger.error("Could not encode broadcast packet " + packet.getClass().getSimpleName() + ": " + throwable);
+            data.release();
+            return null;
+        } finally {
+            ReferenceCountUtil.release(packet);
+        }
+    }
+}
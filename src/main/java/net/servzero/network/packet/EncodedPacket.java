@@ -0,0 +1,55 @@
+package net.servzero.network.packet;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+import net.servzero.network.packet.serialization.PacketDataSerializer;
+import net.servzero.network.protocol.EnumProtocol;
+
+/**
+ * A packet that was already serialized (id and body) by {@link net.servzero.network.PacketBroadcaster}.
+ * The {@link net.servzero.network.packet.serialization.PacketEncoder} passes its buffer through
+ * unchanged instead of encoding the packet again for every recipient.
+ */
+public class EncodedPacket extends AbstractReferenceCounted implements Packet<PacketHandler> {
+    private final EnumProtocol protocol;
+    private final ByteBuf data;
+
+    public EncodedPacket(EnumProtocol protocol, ByteBuf data) {
+        this.protocol = protocol;
+        this.data = data;
+    }
+
+    public EnumProtocol getProtocol() {
+        return protocol;
+    }
+
+    public ByteBuf getData() {
+        return data;
+    }
+
+    @Override
+    public void read(PacketDataSerializer serializer) {
+
+    }
+
+    @Override
+    public void write(PacketDataSerializer serializer) {
+        serializer.writeBytes(this.data, this.data.readerIndex(), this.data.readableBytes());
+    }
+
+    @Override
+    public void handle(PacketHandler handler) {
+
+    }
+
+    @Override
+    protected void deallocate() {
+        this.data.release();
+    }
+
+    @Override
+    public EncodedPacket touch(Object hint) {
+        this.data.touch(hint);
+        return this;
+    }
+}
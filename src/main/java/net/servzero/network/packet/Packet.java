@@ -9,4 +9,11 @@ public interface Packet<T extends PacketHandler> extends ISerializable<PacketDat
     void read(PacketDataSerializer serializer) throws IOException;
     void write(PacketDataSerializer serializer) throws IOException;
     void handle(T handler);
+
+    /**
+     * Expected serialized size of the packet body, used to size the encoder's output buffer.
+     */
+    default int getSizeHint() {
+        return 64;
+    }
 }
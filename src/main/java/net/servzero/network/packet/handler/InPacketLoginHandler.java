@@ -3,6 +3,8 @@ package net.servzero.network.packet.handler;
 import net.servzero.network.NetworkHandler;
 import net.servzero.network.packet.Packet;
 import net.servzero.network.packet.in.InPacketLoginStart;
+import net.servzero.network.packet.out.OutPacketSetCompression;
+import net.servzero.server.Server;
 import net.servzero.server.game.EnumGameMode;
 import net.servzero.server.player.GameProfile;
 import net.servzero.server.player.Player;
@@ -20,9 +22,17 @@ public class InPacketLoginHandler extends AbstractInPacketLoginHandler {
         GameProfile profile = new GameProfile(UUID.randomUUID(), packet.getUsername());
         Player player = new Player(profile, this.networkHandler, EnumGameMode.CREATIVE);
 
-        // TODO: Add encryption and compression
+        // TODO: Add encryption
 
-        PlayerLoginManager.login(player);
+        if (Server.COMPRESSION_THRESHOLD >= 0) {
+            this.networkHandler.sendPacket(new OutPacketSetCompression(Server.COMPRESSION_THRESHOLD));
+            this.networkHandler.setCompression(Server.COMPRESSION_THRESHOLD, Server.COMPRESSION_LEVEL);
+        }
+
+        // Set here rather than on join, so a disconnect before the login task runs still logs the player out
+        this.networkHandler.setOwner(player);
+        // Joining touches the player list and the world, which belong to the main thread
+        Server.getInstance().execute(() -> PlayerLoginManager.login(player));
     }
 
     @Override
@@ -3,6 +3,7 @@ package net.servzero.network.packet.handler;
 import net.servzero.chat.EnumChatType;
 import net.servzero.helper.MathHelper;
 import net.servzero.logger.Logger;
+import net.servzero.network.PacketBroadcaster;
 import net.servzero.network.packet.Packet;
 import net.servzero.network.packet.in.*;
 import net.servzero.network.packet.in.player.*;
@@ -14,9 +15,15 @@ import net.servzero.server.entity.EntityMetadata;
 import net.servzero.network.serialization.EnumDataSerializers;
 import net.servzero.server.game.EnumAnimationAction;
 import net.servzero.server.player.Player;
+import net.servzero.server.scheduler.AsyncPool;
+import net.servzero.server.ticker.TickProfiler;
 import net.servzero.server.world.block.Blocks;
 import net.servzero.server.world.block.Position;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
 public class InPacketPlayHandler extends AbstractInPacketPlayHandler {
     private final Player player;
 
@@ -33,6 +40,7 @@ public class InPacketPlayHandler extends AbstractInPacketPlayHandler {
     @Override
     public void handleClientSettings(InPacketClientSettings packet) {
         this.player.setSettings(packet.toClientSettings());
+        this.player.getChunkView().setViewDistance(this.player.getSettings().getViewDistance());
     }
 
     @Override
@@ -91,8 +99,7 @@ public class InPacketPlayHandler extends AbstractInPacketPlayHandler {
 
         //this.player.getWorld().getBlockAt(this.player.getLocation().asPosition()).setType(Blocks.STONE);
 
-        Server.getInstance().getPlayerList().stream().filter(onlinePlayer -> !onlinePlayer.equals(this.player))
-                .forEach(onlinePlayer -> onlinePlayer.getNetworkManager().sendPacket(new OutPacketAnimation(this.player.getId(), action)));
+        PacketBroadcaster.broadcast(new OutPacketAnimation(this.player.getId(), action), Server.getInstance().getPlayerList(), this.player);
     }
 
     @Override
@@ -109,16 +116,38 @@ public class InPacketPlayHandler extends AbstractInPacketPlayHandler {
                 this.player.getWorld().getBlockAt(Position.get(0, 1, 0)).setType(Blocks.STONE);
                 this.player.sendMessage(this.player.getWorld().getChunkAt(this.player.getLocation().asPosition()).getX() + "" + this.player.getWorld().getChunkAt(this.player.getLocation().asPosition()).getZ());
             } else if (command.startsWith("sneak")) {
-                Server.getInstance().getPlayerListExcept(this.player).forEach(onlinePlayer -> onlinePlayer.getNetworkManager().sendPacket(new OutPacketEntityMetadata(this.player.getId(), new EntityMetadata<>(0, EnumDataSerializers.BYTE, (byte) 0x02))));
+                PacketBroadcaster.broadcast(new OutPacketEntityMetadata(this.player.getId(), new EntityMetadata<>(0, EnumDataSerializers.BYTE, (byte) 0x02)), Server.getInstance().getPlayerList(), this.player);
+            } else if (command.startsWith("tps")) {
+                final Server server = Server.getInstance();
+                if (command.equals("tps dump")) {
+                    // The profile is read here on the main thread, only the write goes to the pool
+                    final String json = server.getTickProfiler().toJson();
+                    server.getAsyncPool().execute(() -> {
+                        try {
+                            Files.write(TickProfiler.DUMP_FILE, json.getBytes(StandardCharsets.UTF_8));
+                            server.execute(() -> this.player.sendMessage("Wrote the tick profile to " + TickProfiler.DUMP_FILE.toAbsolutePath()));
+                        } catch (IOException exception) {
+                            Logger.error("Could not write the tick profile: " + exception);
+                            server.execute(() -> this.player.sendMessage("Could not write the tick profile: " + exception.getMessage()));
+                        }
+                    });
+                } else {
+                    server.getTickProfiler().report().forEach(this.player::sendMessage);
+                    final AsyncPool pool = server.getAsyncPool();
+                    this.player.sendMessage("Async pool: " + pool.getQueuedTaskCount() + " queued (peak " + pool.getPeakQueuedTaskCount()
+                            + " of " + pool.getCapacity() + "), " + pool.getRunningTaskCount() + " running, " + pool.getCompletedTaskCount()
+                            + " done, " + pool.getCallerRunCount() + " ran on the caller, " + pool.getDeferredCount() + " deferred, "
+                            + pool.getStealCount() + " steals");
+                    this.player.sendMessage("Scheduled tick tasks: " + server.getScheduler().getTaskCount());
+                }
             }
             return;
         }
         Logger.info("[Chat] " + this.player.getName()  + ": " + packet.getMessage());
-        Server.getInstance().getPlayerList().forEach(player ->
-                player.getNetworkManager().sendPacket(new OutPacketChatMessage(
-                        this.player.getName() + ": " + packet.getMessage().replace("&", "§"),
-                        EnumChatType.CHAT
-                )));
+        PacketBroadcaster.broadcast(new OutPacketChatMessage(
+                this.player.getName() + ": " + packet.getMessage().replace("&", "§"),
+                EnumChatType.CHAT
+        ), Server.getInstance().getPlayerList());
     }
 
     @Override
@@ -152,10 +181,10 @@ public class InPacketPlayHandler extends AbstractInPacketPlayHandler {
     public void handleEntityAction(InPacketEntityAction packet) {
         switch (packet.getAction()) {
             case START_SNEAKING:
-                Server.getInstance().getPlayerListExcept(this.player).forEach(onlinePlayer -> onlinePlayer.getNetworkManager().sendPacket(new OutPacketEntityMetadata(this.player.getId(), new EntityMetadata<>(0, EnumDataSerializers.BYTE, (byte) 0x02))));
+                PacketBroadcaster.broadcast(new OutPacketEntityMetadata(this.player.getId(), new EntityMetadata<>(0, EnumDataSerializers.BYTE, (byte) 0x02)), Server.getInstance().getPlayerList(), this.player);
                 break;
             case STOP_SNEAKING:
-                Server.getInstance().getPlayerListExcept(this.player).forEach(onlinePlayer -> onlinePlayer.getNetworkManager().sendPacket(new OutPacketEntityMetadata(this.player.getId(), new EntityMetadata<>(0, EnumDataSerializers.BYTE, (byte) 0x00))));
+                PacketBroadcaster.broadcast(new OutPacketEntityMetadata(this.player.getId(), new EntityMetadata<>(0, EnumDataSerializers.BYTE, (byte) 0x00)), Server.getInstance().getPlayerList(), this.player);
                 break;
             default:
                 // TODO: Handle other actions
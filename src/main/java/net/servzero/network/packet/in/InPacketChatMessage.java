@@ -9,6 +9,13 @@ import java.io.IOException;
 public class InPacketChatMessage implements Packet<AbstractInPacketPlayHandler> {
     private String message;
 
+    public InPacketChatMessage() {
+    }
+
+    public InPacketChatMessage(String message) {
+        this.message = message;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
         this.message = serializer.readString(256);
@@ -16,7 +23,7 @@ public class InPacketChatMessage implements Packet<AbstractInPacketPlayHandler>
 
     @Override
     public void write(PacketDataSerializer serializer) throws IOException {
-
+        serializer.writeString(this.message);
     }
 
     @Override
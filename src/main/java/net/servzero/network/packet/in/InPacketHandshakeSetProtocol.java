@@ -11,6 +11,16 @@ public class InPacketHandshakeSetProtocol implements Packet<InPacketHandshakeHan
     private int port;
     private EnumProtocol protocol;
 
+    public InPacketHandshakeSetProtocol() {
+    }
+
+    public InPacketHandshakeSetProtocol(int version, String hostname, int port, EnumProtocol protocol) {
+        this.version = version;
+        this.hostname = hostname;
+        this.port = port;
+        this.protocol = protocol;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) {
         this.version = serializer.readVarInt();
@@ -24,7 +34,7 @@ public class InPacketHandshakeSetProtocol implements Packet<InPacketHandshakeHan
         serializer.writeVarInt(version);
         serializer.writeString(hostname);
         serializer.writeShort(port);
-        serializer.writeVarInt(protocol.ordinal());
+        serializer.writeVarInt(protocol.getId());
     }
 
     public int getVersion() {
@@ -9,6 +9,13 @@ import java.io.IOException;
 public class InPacketKeepAlive implements Packet<AbstractInPacketPlayHandler> {
     private long id;
 
+    public InPacketKeepAlive() {
+    }
+
+    public InPacketKeepAlive(long id) {
+        this.id = id;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
         this.id = serializer.readLong();
@@ -16,7 +23,7 @@ public class InPacketKeepAlive implements Packet<AbstractInPacketPlayHandler> {
 
     @Override
     public void write(PacketDataSerializer serializer) throws IOException {
-
+        serializer.writeLong(this.id);
     }
 
     @Override
@@ -7,6 +7,13 @@ import net.servzero.network.packet.serialization.PacketDataSerializer;
 public class InPacketLoginStart implements Packet<InPacketLoginHandler> {
     private String username;
 
+    public InPacketLoginStart() {
+    }
+
+    public InPacketLoginStart(String username) {
+        this.username = username;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) {
         this.username = serializer.readString(16);
@@ -14,7 +21,7 @@ public class InPacketLoginStart implements Packet<InPacketLoginHandler> {
 
     @Override
     public void write(PacketDataSerializer serializer) {
-
+        serializer.writeString(this.username);
     }
 
     @Override
@@ -7,6 +7,13 @@ import net.servzero.network.packet.serialization.PacketDataSerializer;
 public class InPacketTeleportConfirm implements Packet<AbstractInPacketPlayHandler> {
     private int teleportId;
 
+    public InPacketTeleportConfirm() {
+    }
+
+    public InPacketTeleportConfirm(int teleportId) {
+        this.teleportId = teleportId;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) {
         this.teleportId = serializer.readVarInt();
@@ -14,7 +21,7 @@ public class InPacketTeleportConfirm implements Packet<AbstractInPacketPlayHandl
 
     @Override
     public void write(PacketDataSerializer serializer) {
-
+        serializer.writeVarInt(this.teleportId);
     }
 
     @Override
@@ -9,6 +9,13 @@ import java.io.IOException;
 public class InPacketPlayer implements Packet<AbstractInPacketPlayHandler> {
     protected boolean onGround;
 
+    public InPacketPlayer() {
+    }
+
+    public InPacketPlayer(boolean onGround) {
+        this.onGround = onGround;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
         this.onGround = serializer.readBoolean();
@@ -16,7 +23,7 @@ public class InPacketPlayer implements Packet<AbstractInPacketPlayHandler> {
 
     @Override
     public void write(PacketDataSerializer serializer) throws IOException {
-
+        serializer.writeBoolean(this.onGround);
     }
 
     @Override
@@ -17,6 +17,18 @@ public class InPacketPlayerBlockPlace implements Packet<AbstractInPacketPlayHand
     private float cursorY;
     private float cursorZ;
 
+    public InPacketPlayerBlockPlace() {
+    }
+
+    public InPacketPlayerBlockPlace(Position position, EnumBlockFace blockFace, EnumHand hand, float cursorX, float cursorY, float cursorZ) {
+        this.position = position;
+        this.blockFace = blockFace;
+        this.hand = hand;
+        this.cursorX = cursorX;
+        this.cursorY = cursorY;
+        this.cursorZ = cursorZ;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
         this.position = Position.fromSerializedPosition(serializer.readLong());
@@ -29,7 +41,12 @@ public class InPacketPlayerBlockPlace implements Packet<AbstractInPacketPlayHand
 
     @Override
     public void write(PacketDataSerializer serializer) throws IOException {
-
+        serializer.writeLong(this.position.toSerializedPosition());
+        serializer.writeEnum(this.blockFace);
+        serializer.writeEnum(this.hand);
+        serializer.writeFloat(this.cursorX);
+        serializer.writeFloat(this.cursorY);
+        serializer.writeFloat(this.cursorZ);
     }
 
     @Override
@@ -9,6 +9,15 @@ public class InPacketPlayerLook extends InPacketPlayer {
     private float yaw;
     private float pitch;
 
+    public InPacketPlayerLook() {
+    }
+
+    public InPacketPlayerLook(float yaw, float pitch, boolean onGround) {
+        super(onGround);
+        this.yaw = yaw;
+        this.pitch = pitch;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
         this.yaw = serializer.readFloat();
@@ -18,7 +27,9 @@ public class InPacketPlayerLook extends InPacketPlayer {
 
     @Override
     public void write(PacketDataSerializer serializer) throws IOException {
-
+        serializer.writeFloat(this.yaw);
+        serializer.writeFloat(this.pitch);
+        super.write(serializer);
     }
 
     @Override
@@ -10,6 +10,16 @@ public class InPacketPlayerPosition extends InPacketPlayer {
     protected double y; //Feet position, not head
     protected double z;
 
+    public InPacketPlayerPosition() {
+    }
+
+    public InPacketPlayerPosition(double x, double y, double z, boolean onGround) {
+        super(onGround);
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
         this.x = serializer.readDouble();
@@ -18,6 +28,14 @@ public class InPacketPlayerPosition extends InPacketPlayer {
         super.read(serializer);
     }
 
+    @Override
+    public void write(PacketDataSerializer serializer) throws IOException {
+        serializer.writeDouble(this.x);
+        serializer.writeDouble(this.y);
+        serializer.writeDouble(this.z);
+        super.write(serializer);
+    }
+
     @Override
     public void handle(AbstractInPacketPlayHandler handler) {
         handler.handlePlayerPosition(this);
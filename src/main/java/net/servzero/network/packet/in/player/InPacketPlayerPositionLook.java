@@ -9,6 +9,15 @@ public class InPacketPlayerPositionLook extends InPacketPlayerPosition {
     private float yaw;
     private float pitch;
 
+    public InPacketPlayerPositionLook() {
+    }
+
+    public InPacketPlayerPositionLook(double x, double y, double z, float yaw, float pitch, boolean onGround) {
+        super(x, y, z, onGround);
+        this.yaw = yaw;
+        this.pitch = pitch;
+    }
+
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
         this.x = serializer.readDouble();
@@ -19,6 +28,16 @@ public class InPacketPlayerPositionLook extends InPacketPlayerPosition {
         this.onGround = serializer.readBoolean();
     }
 
+    @Override
+    public void write(PacketDataSerializer serializer) throws IOException {
+        serializer.writeDouble(this.x);
+        serializer.writeDouble(this.y);
+        serializer.writeDouble(this.z);
+        serializer.writeFloat(this.yaw);
+        serializer.writeFloat(this.pitch);
+        serializer.writeBoolean(this.onGround);
+    }
+
     @Override
     public void handle(AbstractInPacketPlayHandler handler) {
         handler.handlePlayerPositionLook(this);
@@ -12,6 +12,9 @@ public class OutPacketChatMessage implements Packet<PacketHandler> {
     private String message;
     private EnumChatType type;
 
+    public OutPacketChatMessage() {
+    }
+
     public OutPacketChatMessage(String message, EnumChatType type) {
         this.message = message;
         this.type = type;
@@ -19,7 +22,8 @@ public class OutPacketChatMessage implements Packet<PacketHandler> {
 
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
-
+        this.message = serializer.readString(PacketDataSerializer.MAX_STRING_LENGTH);
+        this.type = serializer.readEnum(EnumChatType.class);
     }
 
     @Override
@@ -32,4 +36,13 @@ public class OutPacketChatMessage implements Packet<PacketHandler> {
     public void handle(PacketHandler handler) {
 
     }
+
+    // On the client side this is the raw JSON component
+    public String getMessage() {
+        return message;
+    }
+
+    public EnumChatType getType() {
+        return type;
+    }
 }
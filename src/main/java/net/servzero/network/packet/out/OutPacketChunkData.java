@@ -1,5 +1,7 @@
 package net.servzero.network.packet.out;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
 import net.servzero.network.packet.Packet;
 import net.servzero.network.packet.PacketHandler;
 import net.servzero.network.packet.serialization.PacketDataSerializer;
@@ -7,12 +9,22 @@ import net.servzero.server.world.chunk.Chunk;
 
 import java.io.IOException;
 
-
-public class OutPacketChunkData implements Packet<PacketHandler> {
-    private final Chunk chunk;
+/**
+ * Holds a retained duplicate of the chunk's cached packet body. The encoder releases the packet
+ * after writing it, which hands the reference back to the chunk's cache.
+ * <p>
+ * A packet for only some sections is encoded on its own and not cached; the client keeps the
+ * sections that are left out.
+ */
+public class OutPacketChunkData extends AbstractReferenceCounted implements Packet<PacketHandler> {
+    private final ByteBuf data;
 
     public OutPacketChunkData(Chunk chunk) {
-        this.chunk = chunk;
+        this.data = chunk.retainPacketData();
+    }
+
+    public OutPacketChunkData(Chunk chunk, int sectionMask) {
+        this.data = chunk.encodeSections(sectionMask);
     }
 
     @Override
@@ -22,11 +34,27 @@ public class OutPacketChunkData implements Packet<PacketHandler> {
 
     @Override
     public void write(PacketDataSerializer serializer) throws IOException {
-        chunk.write(serializer);
+        serializer.writeBytes(this.data, this.data.readerIndex(), this.data.readableBytes());
     }
 
     @Override
     public void handle(PacketHandler handler) {
 
     }
+
+    @Override
+    public int getSizeHint() {
+        return this.data.readableBytes();
+    }
+
+    @Override
+    protected void deallocate() {
+        this.data.release();
+    }
+
+    @Override
+    public OutPacketChunkData touch(Object hint) {
+        this.data.touch(hint);
+        return this;
+    }
 }
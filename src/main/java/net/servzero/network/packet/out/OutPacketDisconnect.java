@@ -8,13 +8,16 @@ import net.servzero.network.packet.serialization.PacketDataSerializer;
 public class OutPacketDisconnect implements Packet<PacketHandler> {
     private String message;
 
+    public OutPacketDisconnect() {
+    }
+
     public OutPacketDisconnect(String message) {
         this.message = message;
     }
 
     @Override
     public void read(PacketDataSerializer serializer) {
-
+        this.message = serializer.readString(PacketDataSerializer.MAX_STRING_LENGTH);
     }
 
     @Override
@@ -26,4 +29,9 @@ public class OutPacketDisconnect implements Packet<PacketHandler> {
     public void handle(PacketHandler handler) {
 
     }
+
+    // On the client side this is the raw JSON component
+    public String getMessage() {
+        return message;
+    }
 }
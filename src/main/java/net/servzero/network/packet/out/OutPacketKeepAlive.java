@@ -10,11 +10,11 @@ import java.util.Random;
 public class OutPacketKeepAlive implements Packet<PacketHandler> {
     private static final Random ID_GENERATOR = new Random();
 
-    private final long id = ID_GENERATOR.nextLong();
+    private long id = ID_GENERATOR.nextLong();
 
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
-
+        this.id = serializer.readLong();
     }
 
     @Override
@@ -26,4 +26,8 @@ public class OutPacketKeepAlive implements Packet<PacketHandler> {
     public void handle(PacketHandler handler) {
 
     }
+
+    public long getId() {
+        return id;
+    }
 }
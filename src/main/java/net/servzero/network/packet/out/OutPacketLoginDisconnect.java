@@ -7,13 +7,16 @@ import net.servzero.network.packet.serialization.PacketDataSerializer;
 public class OutPacketLoginDisconnect implements Packet<PacketHandler> {
     private String message;
 
+    public OutPacketLoginDisconnect() {
+    }
+
     public OutPacketLoginDisconnect(String message) {
         this.message = message;
     }
 
     @Override
     public void read(PacketDataSerializer serializer) {
-
+        this.message = serializer.readString(PacketDataSerializer.MAX_STRING_LENGTH);
     }
 
     @Override
@@ -25,4 +28,9 @@ public class OutPacketLoginDisconnect implements Packet<PacketHandler> {
     public void handle(PacketHandler handler) {
 
     }
+
+    // On the client side this is the raw JSON component
+    public String getMessage() {
+        return message;
+    }
 }
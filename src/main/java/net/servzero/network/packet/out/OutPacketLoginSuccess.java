@@ -10,6 +10,9 @@ public class OutPacketLoginSuccess implements Packet<PacketHandler> {
     private UUID uuid;
     private String username;
 
+    public OutPacketLoginSuccess() {
+    }
+
     public OutPacketLoginSuccess(UUID uuid, String username) {
         this.uuid = uuid;
         this.username = username;
@@ -17,7 +20,9 @@ public class OutPacketLoginSuccess implements Packet<PacketHandler> {
 
     @Override
     public void read(PacketDataSerializer serializer) {
-
+        final String uuid = serializer.readString(36);
+        this.uuid = uuid.isEmpty() ? null : UUID.fromString(uuid);
+        this.username = serializer.readString(16);
     }
 
     @Override
@@ -30,4 +35,12 @@ public class OutPacketLoginSuccess implements Packet<PacketHandler> {
     public void handle(PacketHandler handler) {
 
     }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getUsername() {
+        return username;
+    }
 }
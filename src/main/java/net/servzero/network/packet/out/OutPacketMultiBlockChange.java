@@ -0,0 +1,53 @@
+package net.servzero.network.packet.out;
+
+import net.servzero.network.packet.Packet;
+import net.servzero.network.packet.PacketHandler;
+import net.servzero.network.packet.serialization.PacketDataSerializer;
+
+import java.io.IOException;
+
+/**
+ * Several block changes within one chunk. Positions are packed as {@code x << 12 | z << 8 | y}
+ * relative to the chunk, and the states are copied when the packet is created.
+ */
+public class OutPacketMultiBlockChange implements Packet<PacketHandler> {
+    private final int chunkX;
+    private final int chunkZ;
+    private final short[] positions;
+    private final int[] globalIds;
+
+    public OutPacketMultiBlockChange(int chunkX, int chunkZ, short[] positions, int[] globalIds) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.positions = positions;
+        this.globalIds = globalIds;
+    }
+
+    @Override
+    public void read(PacketDataSerializer serializer) throws IOException {
+
+    }
+
+    @Override
+    public void write(PacketDataSerializer serializer) throws IOException {
+        serializer.writeInt(this.chunkX);
+        serializer.writeInt(this.chunkZ);
+        serializer.writeVarInt(this.positions.length);
+        for (int i = 0; i < this.positions.length; i++) {
+            final int position = this.positions[i];
+            serializer.writeByte((position >> 8) & 0xFF); // x << 4 | z
+            serializer.writeByte(position & 0xFF); // y
+            serializer.writeVarInt(this.globalIds[i]);
+        }
+    }
+
+    @Override
+    public void handle(PacketHandler handler) {
+
+    }
+
+    @Override
+    public int getSizeHint() {
+        return Integer.BYTES * 2 + 5 + this.positions.length * 5;
+    }
+}
@@ -0,0 +1,35 @@
+package net.servzero.network.packet.out;
+
+import net.servzero.network.packet.Packet;
+import net.servzero.network.packet.PacketHandler;
+import net.servzero.network.packet.serialization.PacketDataSerializer;
+
+public class OutPacketSetCompression implements Packet<PacketHandler> {
+    private int threshold;
+
+    public OutPacketSetCompression() {
+    }
+
+    public OutPacketSetCompression(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void read(PacketDataSerializer serializer) {
+        this.threshold = serializer.readVarInt();
+    }
+
+    @Override
+    public void write(PacketDataSerializer serializer) {
+        serializer.writeVarInt(threshold);
+    }
+
+    @Override
+    public void handle(PacketHandler handler) {
+
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+}
@@ -0,0 +1,31 @@
+package net.servzero.network.packet.out;
+
+import net.servzero.network.packet.Packet;
+import net.servzero.network.packet.PacketHandler;
+import net.servzero.network.packet.serialization.PacketDataSerializer;
+
+public class OutPacketUnloadChunk implements Packet<PacketHandler> {
+    private final int chunkX;
+    private final int chunkZ;
+
+    public OutPacketUnloadChunk(int chunkX, int chunkZ) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    @Override
+    public void read(PacketDataSerializer serializer) {
+
+    }
+
+    @Override
+    public void write(PacketDataSerializer serializer) {
+        serializer.writeInt(chunkX);
+        serializer.writeInt(chunkZ);
+    }
+
+    @Override
+    public void handle(PacketHandler handler) {
+
+    }
+}
@@ -8,13 +8,16 @@ import net.servzero.network.packet.serialization.PacketDataSerializer;
 import java.io.IOException;
 
 public class OutPacketPlayerPositionLook implements Packet<PacketHandler> {
-    private final double x;
-    private final double y;
-    private final double z;
-    private final float yaw;
-    private final float pitch;
-    private final byte flags;
-    private final int teleportId = RandomHelper.getInt();
+    private double x;
+    private double y;
+    private double z;
+    private float yaw;
+    private float pitch;
+    private byte flags;
+    private int teleportId = RandomHelper.getInt();
+
+    public OutPacketPlayerPositionLook() {
+    }
 
     public OutPacketPlayerPositionLook(double x, double y, double z, float yaw, float pitch, byte flags) {
         this.x = x;
@@ -27,7 +30,13 @@ public class OutPacketPlayerPositionLook implements Packet<PacketHandler> {
 
     @Override
     public void read(PacketDataSerializer serializer) throws IOException {
-
+        this.x = serializer.readDouble();
+        this.y = serializer.readDouble();
+        this.z = serializer.readDouble();
+        this.yaw = serializer.readFloat();
+        this.pitch = serializer.readFloat();
+        this.flags = serializer.readByte();
+        this.teleportId = serializer.readVarInt();
     }
 
     @Override
@@ -45,4 +54,32 @@ public class OutPacketPlayerPositionLook implements Packet<PacketHandler> {
     public void handle(PacketHandler handler) {
 
     }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    public byte getFlags() {
+        return flags;
+    }
+
+    public int getTeleportId() {
+        return teleportId;
+    }
 }
@@ -20,22 +20,157 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.UUID;
 
+/**
+ * Protocol primitives on top of a {@link ByteBuf}. The VarInt, string and long array codecs are
+ * also available as static helpers working on any buffer, for callers that only need a field or
+ * two and should not allocate a wrapper for it.
+ */
 public class PacketDataSerializer extends ByteBuf {
+    // Longest string the protocol allows, in characters
+    public static final int MAX_STRING_LENGTH = 32767;
+    private static final int MAX_STRING_BYTES = 44767; // Paper - raise limit a bit more as normal means can trigger this
 
-    private final ByteBuf byteBuf;
+    private ByteBuf byteBuf;
 
     public PacketDataSerializer(ByteBuf bytebuf) {
         this.byteBuf = bytebuf;
     }
 
+    /**
+     * Points this serializer at another buffer, so a codec can keep one instance per channel
+     * instead of allocating one per packet. Packets must not hold on to the serializer.
+     */
+    PacketDataSerializer wrap(ByteBuf byteBuf) {
+        this.byteBuf = byteBuf;
+        return this;
+    }
+
     public static int countBytes(int i) {
-        for (int j = 1; j < 5; ++j) {
-            if ((i & -1 << j * 7) == 0) {
-                return j;
-            }
+        // Every started group of 7 significant bits takes a byte; negative values always take 5
+        return (31 - Integer.numberOfLeadingZeros(i | 1)) / 7 + 1;
+    }
+
+    /**
+     * Writes a VarInt with a single bounds check, as one write of the exact encoded width.
+     */
+    public static void writeVarInt(ByteBuf buffer, int value) {
+        if ((value & 0xFFFFFF80) == 0) {
+            buffer.writeByte(value);
+        } else if ((value & 0xFFFFC000) == 0) {
+            buffer.writeShort((value & 0x7F | 0x80) << 8 | value >>> 7);
+        } else if ((value & 0xFFE00000) == 0) {
+            buffer.writeMedium((value & 0x7F | 0x80) << 16 | (value >>> 7 & 0x7F | 0x80) << 8 | value >>> 14);
+        } else if ((value & 0xF0000000) == 0) {
+            buffer.writeInt((value & 0x7F | 0x80) << 24 | (value >>> 7 & 0x7F | 0x80) << 16
+                    | (value >>> 14 & 0x7F | 0x80) << 8 | value >>> 21);
+        } else {
+            buffer.writeInt((value & 0x7F | 0x80) << 24 | (value >>> 7 & 0x7F | 0x80) << 16
+                    | (value >>> 14 & 0x7F | 0x80) << 8 | (value >>> 21 & 0x7F | 0x80));
+            buffer.writeByte(value >>> 28);
+        }
+    }
+
+    /**
+     * Reads a VarInt with the loop unrolled, so the common one and two byte values return after
+     * as many reads and no shift counter is kept. With the longest VarInt readable, the bytes are
+     * read by index and the reader index moves once; otherwise each read checks the bounds itself.
+     */
+    public static int readVarInt(ByteBuf buffer) {
+        if (buffer.readableBytes() < 5) {
+            return readVarIntSlow(buffer);
         }
 
-        return 5;
+        final int index = buffer.readerIndex();
+        int b = buffer.getByte(index);
+        if (b >= 0) {
+            buffer.readerIndex(index + 1);
+            return b;
+        }
+        int value = b & 0x7F;
+        b = buffer.getByte(index + 1);
+        if (b >= 0) {
+            buffer.readerIndex(index + 2);
+            return value | b << 7;
+        }
+        value |= (b & 0x7F) << 7;
+        b = buffer.getByte(index + 2);
+        if (b >= 0) {
+            buffer.readerIndex(index + 3);
+            return value | b << 14;
+        }
+        value |= (b & 0x7F) << 14;
+        b = buffer.getByte(index + 3);
+        if (b >= 0) {
+            buffer.readerIndex(index + 4);
+            return value | b << 21;
+        }
+        value |= (b & 0x7F) << 21;
+        b = buffer.getByte(index + 4);
+        if (b < 0) {
+            throw new RuntimeException("VarInt too big");
+        }
+        buffer.readerIndex(index + 5);
+        return value | b << 28;
+    }
+
+    private static int readVarIntSlow(ByteBuf buffer) {
+        int b = buffer.readByte();
+        if (b >= 0) {
+            return b;
+        }
+        int value = b & 0x7F;
+        b = buffer.readByte();
+        if (b >= 0) {
+            return value | b << 7;
+        }
+        value |= (b & 0x7F) << 7;
+        b = buffer.readByte();
+        if (b >= 0) {
+            return value | b << 14;
+        }
+        value |= (b & 0x7F) << 14;
+        b = buffer.readByte();
+        if (b >= 0) {
+            return value | b << 21;
+        }
+        value |= (b & 0x7F) << 21;
+        b = buffer.readByte();
+        if (b < 0) {
+            throw new RuntimeException("VarInt too big");
+        }
+        return value | b << 28;
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string. {@link String#getBytes} is kept over encoding into the
+     * buffer with {@code ByteBufUtil.writeUtf8}: for the mostly ASCII strings of the protocol it is
+     * an intrinsic array copy, which beats the per char loop even with the extra array.
+     */
+    public static void writeString(ByteBuf buffer, String s) {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new EncoderException("String too big (was " + bytes.length + " bytes encoded, max " + MAX_STRING_BYTES + ")"); // Paper
+        }
+        writeVarInt(buffer, bytes.length);
+        buffer.writeBytes(bytes);
+    }
+
+    /**
+     * Writes a length prefixed array of big endian longs as one bulk copy where the buffer allows.
+     */
+    public static void writeLongArray(ByteBuf buffer, long[] values) {
+        writeVarInt(buffer, values.length);
+        final int bytes = values.length * Long.BYTES;
+        buffer.ensureWritable(bytes);
+        final int writerIndex = buffer.writerIndex();
+        if (buffer.nioBufferCount() == 1) {
+            buffer.nioBuffer(writerIndex, bytes).order(ByteOrder.BIG_ENDIAN).asLongBuffer().put(values);
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                buffer.setLong(writerIndex + i * Long.BYTES, values[i]);
+            }
+        }
+        buffer.writerIndex(writerIndex + bytes);
     }
 
     public PacketDataSerializer writeByteArray(byte[] abyte) {
@@ -95,15 +230,7 @@ public class PacketDataSerializer extends ByteBuf {
     }
 
     public PacketDataSerializer writeLongArray(long[] varLongArray) {
-        this.writeVarInt(varLongArray.length);
-        int i = varLongArray.length;
-
-        for (int j = 0; j < i; ++j) {
-            long k = varLongArray[j];
-
-            this.writeLong(k);
-        }
-
+        writeLongArray(this.byteBuf, varLongArray);
         return this;
     }
 
@@ -116,20 +243,7 @@ public class PacketDataSerializer extends ByteBuf {
     }
 
     public int readVarInt() {
-        int i = 0;
-        int j = 0;
-
-        byte b0;
-
-        do {
-            b0 = this.readByte();
-            i |= (b0 & 127) << j++ * 7;
-            if (j > 5) {
-                throw new RuntimeException("VarInt too big");
-            }
-        } while ((b0 & 128) == 128);
-
-        return i;
+        return readVarInt(this.byteBuf);
     }
 
     public long readVarLong() {
@@ -160,12 +274,7 @@ public class PacketDataSerializer extends ByteBuf {
     }
 
     public PacketDataSerializer writeVarInt(int i) {
-        while ((i & -128) != 0) {
-            this.writeByte(i & 127 | 128);
-            i >>>= 7;
-        }
-
-        this.writeByte(i);
+        writeVarInt(this.byteBuf, i);
         return this;
     }
 
@@ -199,15 +308,8 @@ public class PacketDataSerializer extends ByteBuf {
     }
 
     public PacketDataSerializer writeString(String s) {
-        byte[] abyte = s.getBytes(StandardCharsets.UTF_8);
-
-        if (abyte.length > 44767) { // Paper - raise limit a bit more as normal means can trigger this
-            throw new EncoderException("String too big (was " + s.length() + " bytes encoded, max " + 44767 + ")"); // Paper
-        } else {
-            this.writeVarInt(abyte.length);
-            this.writeBytes(abyte);
-            return this;
-        }
+        writeString(this.byteBuf, s);
+        return this;
     }
 
     public Date readDate() {
@@ -3,49 +3,180 @@ package net.servzero.network.packet.serialization;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DecoderException;
 import net.servzero.network.NetworkHandler;
 import net.servzero.network.packet.Packet;
+import net.servzero.network.protocol.EnumProtocol;
 import net.servzero.network.protocol.EnumProtocolDirection;
-import net.servzero.server.Server;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
+/**
+ * Splits, decompresses and decodes inbound packets in one handler. The length prefix is read in
+ * place, the frame is decoded from a slice of the cumulation buffer without copying, and one
+ * packet is produced per frame so protocol switches apply before the next frame is decoded.
+ */
 public class PacketDecoder extends ByteToMessageDecoder {
+    private static final int MAX_HEADER_BYTES = 3;
+    private static final int MAX_UNCOMPRESSED_LENGTH = 2097152;
+
     private final EnumProtocolDirection direction;
+    private final boolean skipUnknownPackets;
+    // Rebound to each frame; the decoder only ever runs on its channel's event loop
+    private final PacketDataSerializer serializer = new PacketDataSerializer(null);
+    private Inflater inflater;
+    private int compressionThreshold = -1;
 
     public PacketDecoder(EnumProtocolDirection direction) {
+        this(direction, false);
+    }
+
+    /**
+     * A decoder that drops packets it has no factory for instead of failing the connection, for
+     * clients that only understand part of the protocol.
+     */
+    public PacketDecoder(EnumProtocolDirection direction, boolean skipUnknownPackets) {
         this.direction = direction;
+        this.skipUnknownPackets = skipUnknownPackets;
+    }
+
+    /**
+     * Enables decompression of frames carrying an uncompressed length prefix. A negative threshold
+     * disables it again.
+     */
+    public void setCompressionThreshold(int threshold) {
+        this.compressionThreshold = threshold;
+        if (threshold >= 0 && this.inflater == null) {
+            this.inflater = new Inflater();
+        } else if (threshold < 0 && this.inflater != null) {
+            this.inflater.end();
+            this.inflater = null;
+        }
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
     }
 
     protected void decode(ChannelHandlerContext ctx, ByteBuf byteBuf, List<Object> decoded) throws Exception {
-        if (byteBuf.readableBytes() != 0) {
-            PacketDataSerializer packetDataSerializer = new PacketDataSerializer(byteBuf);
-            int packetId = packetDataSerializer.readVarInt();
+        final int start = byteBuf.readerIndex();
+        final int available = byteBuf.writerIndex() - start;
 
-            if (Server.IGNORED_PACKETS.contains(packetId)) {
-                removeOverflow(packetDataSerializer);
+        int length = 0;
+        int headerBytes = 0;
+        while (true) {
+            if (headerBytes == available) {
                 return;
             }
-            Optional<? extends Packet<?>> optionalPacket = ctx.channel().attr(NetworkHandler.protocolAttributeKey).get().getPacket(this.direction, packetId);
-            if (optionalPacket.isEmpty()) {
-                removeOverflow(packetDataSerializer);
+            final byte b = byteBuf.getByte(start + headerBytes);
+            length |= (b & 127) << headerBytes++ * 7;
+            if (b >= 0) {
+                break;
+            }
+            if (headerBytes == MAX_HEADER_BYTES) {
+                throw new CorruptedFrameException("length wider than 21-bit");
+            }
+        }
+
+        if (available - headerBytes < length) {
+            return;
+        }
+
+        final ByteBuf frame = byteBuf.slice(start + headerBytes, length);
+        byteBuf.readerIndex(start + headerBytes + length);
+        if (length == 0) {
+            return;
+        }
+
+        final Packet<?> packet = this.decodeFrame(ctx, frame);
+        if (packet != null) {
+            decoded.add(packet);
+        }
+    }
+
+    private Packet<?> decodeFrame(ChannelHandlerContext ctx, ByteBuf frame) throws Exception {
+        ByteBuf inflated = null;
+        try {
+            ByteBuf body = frame;
+            if (this.compressionThreshold >= 0) {
+                final int dataLength = PacketDataSerializer.readVarInt(frame);
+                if (dataLength != 0) {
+                    body = inflated = this.inflate(ctx, frame, dataLength);
+                }
+            }
+
+            PacketDataSerializer packetDataSerializer = this.serializer.wrap(body);
+            int packetId = PacketDataSerializer.readVarInt(body);
+
+            EnumProtocol protocol = ctx.channel().attr(NetworkHandler.protocolAttributeKey).get();
+            if (protocol.isIgnored(this.direction, packetId)) {
+                return null;
+            }
+            Packet<?> packet = protocol.createPacket(this.direction, packetId);
+            if (packet == null) {
+                if (this.skipUnknownPackets) {
+                    return null;
+                }
                 throw new IOException("Bad packet id: " + packetId);
-            } else {
-                Packet<?> packet = optionalPacket.get();
-                packet.read(packetDataSerializer);
-                if (packetDataSerializer.readableBytes() > 0) {
-                    throw new IOException("Packet ID: " + packetId + " (" + packet.getClass().getSimpleName() + ") was larger than I expected, found " + packetDataSerializer.readableBytes() + " bytes extra whilst reading packet ID: " + packetId);
-                } else {
-                    decoded.add(packet);
+            }
+
+            packet.read(packetDataSerializer);
+            if (packetDataSerializer.readableBytes() > 0) {
+                throw new IOException("Packet ID: " + packetId + " (" + packet.getClass().getSimpleName() + ") was larger than I expected, found " + packetDataSerializer.readableBytes() + " bytes extra whilst reading packet ID: " + packetId);
+            }
+            return packet;
+        } finally {
+            this.serializer.wrap(null);
+            if (inflated != null) {
+                inflated.release();
+            }
+        }
+    }
+
+    private ByteBuf inflate(ChannelHandlerContext ctx, ByteBuf frame, int dataLength) throws DecoderException {
+        if (dataLength < this.compressionThreshold) {
+            throw new DecoderException("Badly compressed packet - size of " + dataLength + " is below server threshold of " + this.compressionThreshold);
+        }
+        if (dataLength > MAX_UNCOMPRESSED_LENGTH) {
+            throw new DecoderException("Badly compressed packet - size of " + dataLength + " is larger than protocol maximum of " + MAX_UNCOMPRESSED_LENGTH);
+        }
+
+        ByteBuf result = ctx.alloc().directBuffer(dataLength, dataLength);
+        try {
+            ByteBuffer output = result.nioBuffer(0, dataLength);
+            this.inflater.setInput(frame.nioBuffer());
+            while (output.hasRemaining() && !this.inflater.finished()) {
+                if (this.inflater.inflate(output) == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+                    break;
                 }
             }
+            if (output.hasRemaining()) {
+                throw new DecoderException("Badly compressed packet - inflated size does not match declared size of " + dataLength);
+            }
+            result.writerIndex(dataLength);
+            ByteBuf inflated = result;
+            result = null;
+            return inflated;
+        } catch (DataFormatException exception) {
+            throw new DecoderException("Badly compressed packet", exception);
+        } finally {
+            this.inflater.reset();
+            if (result != null) {
+                result.release();
+            }
         }
     }
 
-    private void removeOverflow(ByteBuf message) {
-        int length = message.readableBytes();
-        message.readBytes(length);
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) {
+        if (this.inflater != null) {
+            this.inflater.end();
+            this.inflater = null;
+        }
     }
-}
\ No newline at end of file
+}
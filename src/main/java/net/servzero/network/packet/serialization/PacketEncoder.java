@@ -1,45 +1,195 @@
 package net.servzero.network.packet.serialization;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
 import net.servzero.network.NetworkHandler;
+import net.servzero.network.packet.EncodedPacket;
 import net.servzero.network.packet.Packet;
 import net.servzero.network.protocol.EnumProtocol;
 import net.servzero.network.protocol.EnumProtocolDirection;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
 
-public class PacketEncoder extends MessageToByteEncoder<Packet<?>> {
+/**
+ * Serializes outbound packets into complete frames. A three byte length header is reserved in
+ * front of the packet, the packet is written behind it and the length is backpatched as a padded
+ * VarInt, so the body is never copied to prepend its length. When compression is enabled packets
+ * at or above the threshold are deflated with the channel's {@link Deflater}.
+ */
+public class PacketEncoder extends ChannelOutboundHandlerAdapter {
     private static final Logger a = net.servzero.logger.Logger.getLogger();
     private static final int MAX_PACKET_SIZE = 2097152;
+    private static final int HEADER_BYTES = 3;
+    private static final int MIN_DEFLATE_CHUNK = 8192;
     private final EnumProtocolDirection direction;
+    // Rebound to each packet's buffer; the encoder only ever runs on its channel's event loop
+    private final PacketDataSerializer serializer = new PacketDataSerializer(null);
+
+    private Deflater deflater;
+    private int compressionThreshold = -1;
 
     public PacketEncoder(EnumProtocolDirection direction) {
         this.direction = direction;
     }
 
-    protected void encode(ChannelHandlerContext channelhandlercontext, Packet<?> packet, ByteBuf byteBuf) throws Exception {
-        EnumProtocol protocol = channelhandlercontext.channel().attr(NetworkHandler.protocolAttributeKey).get();
+    /**
+     * Enables compression of packets of at least {@code threshold} bytes. A negative threshold
+     * disables it again.
+     */
+    public void setCompression(int threshold, int level) {
+        this.compressionThreshold = threshold;
+        if (this.deflater != null) {
+            this.deflater.end();
+            this.deflater = null;
+        }
+        if (threshold >= 0) {
+            this.deflater = new Deflater(level);
+        }
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!(msg instanceof Packet)) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        ByteBuf frame = null;
+        try {
+            if (msg instanceof EncodedPacket) {
+                frame = this.encodeFrame(ctx, ((EncodedPacket) msg).getData());
+            } else {
+                frame = this.encodePacket(ctx, (Packet<?>) msg);
+            }
+        } catch (Throwable throwable) {
+            PacketEncoder.a.error(throwable);
+            promise.tryFailure(throwable);
+            return;
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+        ctx.write(frame, promise);
+    }
+
+    private ByteBuf encodePacket(ChannelHandlerContext ctx, Packet<?> packet) throws IOException {
+        EnumProtocol protocol = ctx.channel().attr(NetworkHandler.protocolAttributeKey).get();
         int packetId = protocol.getPacketId(this.direction, packet);
 
         if (packetId < 0) {
             throw new IOException("Can't serialize unregistered packet");
-        } else {
-            PacketDataSerializer packetdataserializer = new PacketDataSerializer(byteBuf);
-            packetdataserializer.writeVarInt(packetId);
+        }
 
-            try {
-                packet.write(packetdataserializer);
-            } catch (Throwable throwable) {
-                PacketEncoder.a.error(throwable);
-            }
+        final boolean compression = this.compressionThreshold >= 0;
+        final int bodyStart = HEADER_BYTES + (compression ? 1 : 0);
+        ByteBuf buffer = ctx.alloc().directBuffer(bodyStart + packet.getSizeHint());
+        try {
+            buffer.writerIndex(bodyStart);
+            PacketDataSerializer.writeVarInt(buffer, packetId);
+            packet.write(this.serializer.wrap(buffer));
 
-            int packetLength = byteBuf.readableBytes();
+            int packetLength = buffer.writerIndex() - bodyStart;
             if (packetLength > MAX_PACKET_SIZE) {
                 throw new PacketTooLargeException(packet, packetLength);
             }
+
+            if (compression && packetLength >= this.compressionThreshold) {
+                final ByteBuf compressed = this.deflate(ctx, buffer.nioBuffer(bodyStart, packetLength), packetLength);
+                buffer.release();
+                buffer = compressed;
+            } else if (compression) {
+                buffer.setByte(HEADER_BYTES, 0);
+            }
+
+            writeHeader(buffer, buffer.writerIndex() - HEADER_BYTES);
+            ByteBuf frame = buffer;
+            buffer = null;
+            return frame;
+        } finally {
+            this.serializer.wrap(null);
+            if (buffer != null) {
+                buffer.release();
+            }
+        }
+    }
+
+    /**
+     * Frames an already serialized packet. Below the compression threshold the data is passed on
+     * as is behind a small header buffer instead of being copied.
+     */
+    private ByteBuf encodeFrame(ChannelHandlerContext ctx, ByteBuf data) {
+        final int packetLength = data.readableBytes();
+
+        if (this.compressionThreshold >= 0 && packetLength >= this.compressionThreshold) {
+            final ByteBuf compressed = this.deflate(ctx, data.nioBuffer(), packetLength);
+            writeHeader(compressed, compressed.writerIndex() - HEADER_BYTES);
+            return compressed;
+        }
+
+        final ByteBuf header = ctx.alloc().directBuffer(HEADER_BYTES + 1);
+        if (this.compressionThreshold >= 0) {
+            PacketDataSerializer.writeVarInt(header, packetLength + 1);
+            header.writeByte(0);
+        } else {
+            PacketDataSerializer.writeVarInt(header, packetLength);
+        }
+        final CompositeByteBuf frame = ctx.alloc().compositeDirectBuffer(2);
+        frame.addComponents(true, header, data.retain());
+        return frame;
+    }
+
+    /**
+     * Deflates the packet into a new buffer that starts with a reserved frame header followed by
+     * the uncompressed length.
+     */
+    private ByteBuf deflate(ChannelHandlerContext ctx, ByteBuffer input, int packetLength) {
+        final ByteBuf compressed = ctx.alloc().directBuffer(HEADER_BYTES + 5 + packetLength / 2);
+        try {
+            compressed.writerIndex(HEADER_BYTES);
+            PacketDataSerializer.writeVarInt(compressed, packetLength);
+            this.deflater.setInput(input);
+            this.deflater.finish();
+            while (!this.deflater.finished()) {
+                compressed.ensureWritable(MIN_DEFLATE_CHUNK);
+                ByteBuffer output = compressed.nioBuffer(compressed.writerIndex(), compressed.writableBytes());
+                compressed.writerIndex(compressed.writerIndex() + this.deflater.deflate(output));
+            }
+            return compressed;
+        } catch (Throwable throwable) {
+            compressed.release();
+            throw throwable;
+        } finally {
+            this.deflater.reset();
+        }
+    }
+
+    /**
+     * Writes the frame length into the reserved header as a VarInt padded to three bytes.
+     */
+    private static void writeHeader(ByteBuf buffer, int length) {
+        if (length >= 1 << 21) {
+            throw new IllegalArgumentException("unable to fit " + length + " into " + HEADER_BYTES);
+        }
+        buffer.setByte(0, length & 127 | 128);
+        buffer.setByte(1, length >>> 7 & 127 | 128);
+        buffer.setByte(2, length >>> 14);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        if (this.deflater != null) {
+            this.deflater.end();
+            this.deflater = null;
         }
     }
 
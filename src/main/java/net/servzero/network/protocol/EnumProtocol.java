@@ -4,6 +4,7 @@ import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Maps;
 import net.servzero.logger.Logger;
+import net.servzero.network.packet.EncodedPacket;
 import net.servzero.network.packet.Packet;
 import net.servzero.network.packet.in.*;
 import net.servzero.network.packet.in.player.*;
@@ -14,40 +15,47 @@ import net.servzero.network.packet.out.player.OutPacketSetSlot;
 import net.servzero.network.packet.out.player.OutPacketSoundEffect;
 import net.servzero.network.packet.out.player.OutPacketSpawnPlayer;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Map;
-import java.util.Optional;
+import java.util.function.Supplier;
 
 public enum EnumProtocol {
     HANDSHAKING(-1) {{
-        this.addPacket(0x00, EnumProtocolDirection.TO_SERVER, InPacketHandshakeSetProtocol.class);
+        this.addPacket(0x00, EnumProtocolDirection.TO_SERVER, InPacketHandshakeSetProtocol.class, InPacketHandshakeSetProtocol::new);
     }},
     PLAY(0) {{
-        this.addPacket(0x00, EnumProtocolDirection.TO_SERVER, InPacketTeleportConfirm.class);
-        this.addPacket(0x02, EnumProtocolDirection.TO_SERVER, InPacketChatMessage.class);
-        this.addPacket(0x04, EnumProtocolDirection.TO_SERVER, InPacketClientSettings.class);
-        this.addPacket(0x08, EnumProtocolDirection.TO_SERVER, InPacketCloseWindow.class);
-        this.addPacket(0x09, EnumProtocolDirection.TO_SERVER, InPacketPluginMessage.class);
-        this.addPacket(0x0B, EnumProtocolDirection.TO_SERVER, InPacketKeepAlive.class);
-        this.addPacket(0x0C, EnumProtocolDirection.TO_SERVER, InPacketPlayer.class);
-        this.addPacket(0x0D, EnumProtocolDirection.TO_SERVER, InPacketPlayerPosition.class);
-        this.addPacket(0x0E, EnumProtocolDirection.TO_SERVER, InPacketPlayerPositionLook.class);
-        this.addPacket(0x0F, EnumProtocolDirection.TO_SERVER, InPacketPlayerLook.class);
-        this.addPacket(0x14, EnumProtocolDirection.TO_SERVER, InPacketPlayerDig.class);
-        this.addPacket(0x15, EnumProtocolDirection.TO_SERVER, InPacketEntityAction.class);
-        this.addPacket(0x1A, EnumProtocolDirection.TO_SERVER, InPacketHeldItemChange.class);
-        this.addPacket(0x1D, EnumProtocolDirection.TO_SERVER, InPacketAnimation.class);
-        this.addPacket(0x1F, EnumProtocolDirection.TO_SERVER, InPacketPlayerBlockPlace.class);
+        this.ignorePacket(0x4D, EnumProtocolDirection.TO_SERVER); // Advancements
+        this.ignorePacket(0x07, EnumProtocolDirection.TO_SERVER); // Window click
+        this.ignorePacket(0x1B, EnumProtocolDirection.TO_SERVER); // Creative inventory action
+        this.ignorePacket(0x20, EnumProtocolDirection.TO_SERVER); // Use item (not place)
+        this.ignorePacket(0x0A, EnumProtocolDirection.TO_SERVER); // Entity Interaction
+        this.addPacket(0x00, EnumProtocolDirection.TO_SERVER, InPacketTeleportConfirm.class, InPacketTeleportConfirm::new);
+        this.addPacket(0x02, EnumProtocolDirection.TO_SERVER, InPacketChatMessage.class, InPacketChatMessage::new);
+        this.addPacket(0x04, EnumProtocolDirection.TO_SERVER, InPacketClientSettings.class, InPacketClientSettings::new);
+        this.addPacket(0x08, EnumProtocolDirection.TO_SERVER, InPacketCloseWindow.class, InPacketCloseWindow::new);
+        this.addPacket(0x09, EnumProtocolDirection.TO_SERVER, InPacketPluginMessage.class, InPacketPluginMessage::new);
+        this.addPacket(0x0B, EnumProtocolDirection.TO_SERVER, InPacketKeepAlive.class, InPacketKeepAlive::new);
+        this.addPacket(0x0C, EnumProtocolDirection.TO_SERVER, InPacketPlayer.class, InPacketPlayer::new);
+        this.addPacket(0x0D, EnumProtocolDirection.TO_SERVER, InPacketPlayerPosition.class, InPacketPlayerPosition::new);
+        this.addPacket(0x0E, EnumProtocolDirection.TO_SERVER, InPacketPlayerPositionLook.class, InPacketPlayerPositionLook::new);
+        this.addPacket(0x0F, EnumProtocolDirection.TO_SERVER, InPacketPlayerLook.class, InPacketPlayerLook::new);
+        this.addPacket(0x14, EnumProtocolDirection.TO_SERVER, InPacketPlayerDig.class, InPacketPlayerDig::new);
+        this.addPacket(0x15, EnumProtocolDirection.TO_SERVER, InPacketEntityAction.class, InPacketEntityAction::new);
+        this.addPacket(0x1A, EnumProtocolDirection.TO_SERVER, InPacketHeldItemChange.class, InPacketHeldItemChange::new);
+        this.addPacket(0x1D, EnumProtocolDirection.TO_SERVER, InPacketAnimation.class, InPacketAnimation::new);
+        this.addPacket(0x1F, EnumProtocolDirection.TO_SERVER, InPacketPlayerBlockPlace.class, InPacketPlayerBlockPlace::new);
         this.addPacket(0x05, EnumProtocolDirection.TO_CLIENT, OutPacketSpawnPlayer.class);
         this.addPacket(0x06, EnumProtocolDirection.TO_CLIENT, OutPacketAnimation.class);
         this.addPacket(0x0B, EnumProtocolDirection.TO_CLIENT, OutPacketBlockChange.class);
         this.addPacket(0x0D, EnumProtocolDirection.TO_CLIENT, OutPacketDifficulty.class);
-        this.addPacket(0x0F, EnumProtocolDirection.TO_CLIENT, OutPacketChatMessage.class);
+        this.addPacket(0x0F, EnumProtocolDirection.TO_CLIENT, OutPacketChatMessage.class, OutPacketChatMessage::new);
+        this.addPacket(0x10, EnumProtocolDirection.TO_CLIENT, OutPacketMultiBlockChange.class);
         this.addPacket(0x16, EnumProtocolDirection.TO_CLIENT, OutPacketSetSlot.class);
-        this.addPacket(0x1A, EnumProtocolDirection.TO_CLIENT, OutPacketDisconnect.class);
+        this.addPacket(0x1A, EnumProtocolDirection.TO_CLIENT, OutPacketDisconnect.class, OutPacketDisconnect::new);
         this.addPacket(0x1B, EnumProtocolDirection.TO_CLIENT, OutPacketEntityStatus.class);
-        this.addPacket(0x1F, EnumProtocolDirection.TO_CLIENT, OutPacketKeepAlive.class);
+        this.addPacket(0x1D, EnumProtocolDirection.TO_CLIENT, OutPacketUnloadChunk.class);
+        this.addPacket(0x1F, EnumProtocolDirection.TO_CLIENT, OutPacketKeepAlive.class, OutPacketKeepAlive::new);
         this.addPacket(0x20, EnumProtocolDirection.TO_CLIENT, OutPacketChunkData.class);
         this.addPacket(0x23, EnumProtocolDirection.TO_CLIENT, OutPacketJoinGame.class);
         this.addPacket(0x25, EnumProtocolDirection.TO_CLIENT, OutPacketEntity.class);
@@ -56,7 +64,7 @@ public enum EnumProtocol {
         this.addPacket(0x28, EnumProtocolDirection.TO_CLIENT, OutPacketEntityLook.class);
         this.addPacket(0x2C, EnumProtocolDirection.TO_CLIENT, OutPacketPlayerAbilities.class);
         this.addPacket(0x2E, EnumProtocolDirection.TO_CLIENT, OutPacketPlayerListItem.class);
-        this.addPacket(0x2F, EnumProtocolDirection.TO_CLIENT, OutPacketPlayerPositionLook.class);
+        this.addPacket(0x2F, EnumProtocolDirection.TO_CLIENT, OutPacketPlayerPositionLook.class, OutPacketPlayerPositionLook::new);
         this.addPacket(0x32, EnumProtocolDirection.TO_CLIENT, OutPacketDestroyEntities.class);
         this.addPacket(0x36, EnumProtocolDirection.TO_CLIENT, OutPacketEntityHeadLook.class);
         this.addPacket(0x3A, EnumProtocolDirection.TO_CLIENT, OutPacketHeldItemChange.class);
@@ -65,73 +73,136 @@ public enum EnumProtocol {
         this.addPacket(0x4C, EnumProtocolDirection.TO_CLIENT, OutPacketEntityTeleport.class);
     }},
     STATUS(1) {{
-        this.addPacket(0x00, EnumProtocolDirection.TO_SERVER, InPacketStatusStart.class);
-        this.addPacket(0x01, EnumProtocolDirection.TO_SERVER, InPacketStatusPing.class);
+        this.addPacket(0x00, EnumProtocolDirection.TO_SERVER, InPacketStatusStart.class, InPacketStatusStart::new);
+        this.addPacket(0x01, EnumProtocolDirection.TO_SERVER, InPacketStatusPing.class, InPacketStatusPing::new);
         this.addPacket(0x00, EnumProtocolDirection.TO_CLIENT, OutPacketStatusResponse.class);
         this.addPacket(0x01, EnumProtocolDirection.TO_CLIENT, OutPacketStatusPong.class);
     }},
     LOGIN(2) {{
-        this.addPacket(0x00, EnumProtocolDirection.TO_SERVER, InPacketLoginStart.class);
-        this.addPacket(0x00, EnumProtocolDirection.TO_CLIENT, OutPacketLoginDisconnect.class);
-        this.addPacket(0x02, EnumProtocolDirection.TO_CLIENT, OutPacketLoginSuccess.class);
+        this.addPacket(0x00, EnumProtocolDirection.TO_SERVER, InPacketLoginStart.class, InPacketLoginStart::new);
+        this.addPacket(0x00, EnumProtocolDirection.TO_CLIENT, OutPacketLoginDisconnect.class, OutPacketLoginDisconnect::new);
+        this.addPacket(0x02, EnumProtocolDirection.TO_CLIENT, OutPacketLoginSuccess.class, OutPacketLoginSuccess::new);
+        this.addPacket(0x03, EnumProtocolDirection.TO_CLIENT, OutPacketSetCompression.class, OutPacketSetCompression::new);
     }};
 
-    public static EnumProtocol getById(int id) {
-        return Arrays.stream(values()).filter(enumProtocol -> enumProtocol.id == id).findFirst().orElse(null);
-    }
+    private static final EnumProtocol[] BY_ID = new EnumProtocol[values().length];
 
-    public static EnumProtocol getByPacket(Packet<?> packet) {
-        return protocols.get(packet.getClass());
+    // Registration of a packet class: a class belongs to exactly one protocol and direction
+    private static final class Registration {
+        private final EnumProtocol protocol;
+        private final EnumProtocolDirection direction;
+        private final int id;
+
+        private Registration(EnumProtocol protocol, EnumProtocolDirection direction, int id) {
+            this.protocol = protocol;
+            this.direction = direction;
+            this.id = id;
+        }
     }
 
-    private static final Map<Class<? extends Packet<?>>, EnumProtocol> protocols = Maps.newHashMap();
+    private static final Map<Class<?>, Registration> registrations = Maps.newHashMap();
+    private static final ClassValue<Registration> registrationCache = new ClassValue<>() {
+        @Override
+        protected Registration computeValue(Class<?> type) {
+            return registrations.get(type);
+        }
+    };
+
     private final int id;
-    private final Map<EnumProtocolDirection, BiMap<Integer, Class<? extends Packet<?>>>> packets;
+    private final Map<EnumProtocolDirection, PacketTable> packets;
 
     EnumProtocol(int id) {
         this.id = id;
         this.packets = Maps.newEnumMap(EnumProtocolDirection.class);
+        for (EnumProtocolDirection direction : EnumProtocolDirection.values()) {
+            this.packets.put(direction, new PacketTable());
+        }
+    }
+
+    public static EnumProtocol getById(int id) {
+        return id < -1 || id + 1 >= BY_ID.length ? null : BY_ID[id + 1];
+    }
+
+    public static EnumProtocol getByPacket(Packet<?> packet) {
+        if (packet instanceof EncodedPacket) {
+            return ((EncodedPacket) packet).getProtocol();
+        }
+        final Registration registration = registrationCache.get(packet.getClass());
+        return registration == null ? null : registration.protocol;
     }
 
     public int getId() {
         return id;
     }
 
-    public Optional<Packet<?>> getPacket(EnumProtocolDirection direction, int id) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
-        Class<? extends Packet<?>> cls = null;
-        if (this.packets.containsKey(direction)) {
-            cls = this.packets.get(direction).get(id);
+    /**
+     * Creates an empty packet for the id, or returns null if the id is unknown in this protocol.
+     */
+    public Packet<?> createPacket(EnumProtocolDirection direction, int id) {
+        final Supplier<? extends Packet<?>>[] factories = this.packets.get(direction).factories;
+        if (id < 0 || id >= factories.length || factories[id] == null) {
+            return null;
         }
-        return Optional.ofNullable(cls == null ? null : cls.getDeclaredConstructor().newInstance());
+        return factories[id].get();
+    }
+
+    /**
+     * Whether packets with this id are dropped by the decoder before anything is allocated for them.
+     */
+    public boolean isIgnored(EnumProtocolDirection direction, int id) {
+        return id >= 0 && this.packets.get(direction).ignored.get(id);
     }
 
     public int getPacketId(EnumProtocolDirection direction, Packet<?> packet) {
-        return this.packets.get(direction).inverse().getOrDefault(packet.getClass(), -1);
+        final Registration registration = registrationCache.get(packet.getClass());
+        return registration != null && registration.protocol == this && registration.direction == direction ? registration.id : -1;
     }
 
     protected EnumProtocol addPacket(int id, EnumProtocolDirection direction, Class<? extends Packet<?>> packet) {
-        BiMap<Integer, Class<? extends Packet<?>>> map = this.packets.computeIfAbsent(direction, k -> HashBiMap.create());
+        return this.addPacket(id, direction, packet, null);
+    }
 
-        if (map.containsValue(packet)) {
-            String error = "Could not register packet " + packet.getSimpleName() + ": already existing as id: " + map.inverse().get(packet);
+    protected <T extends Packet<?>> EnumProtocol addPacket(int id, EnumProtocolDirection direction, Class<T> packet, Supplier<T> factory) {
+        PacketTable table = this.packets.get(direction);
+
+        if (table.classes.containsValue(packet)) {
+            String error = "Could not register packet " + packet.getSimpleName() + ": already existing as id: " + table.classes.inverse().get(packet);
             Logger.error(error);
             throw new IllegalArgumentException(error);
         } else {
-//            map.put(map.size(), packet);
-            map.put(id, packet);
+            table.classes.put(id, packet);
+            if (factory != null) {
+                if (id >= table.factories.length) {
+                    table.factories = Arrays.copyOf(table.factories, id + 1);
+                }
+                table.factories[id] = factory;
+            }
             return this;
         }
     }
 
+    protected EnumProtocol ignorePacket(int id, EnumProtocolDirection direction) {
+        this.packets.get(direction).ignored.set(id);
+        return this;
+    }
+
+    private static final class PacketTable {
+        private final BiMap<Integer, Class<? extends Packet<?>>> classes = HashBiMap.create();
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Supplier<? extends Packet<?>>[] factories = new Supplier[0];
+        private final BitSet ignored = new BitSet();
+    }
+
     static {
         Arrays.stream(values()).forEach(enumProtocol -> {
-            enumProtocol.packets.forEach((direction, integerClassBiMap) -> {
-                integerClassBiMap.forEach((integer, packetClass) -> {
-                    if (protocols.containsKey(packetClass)) {
-                        throw new Error("Packet " + packetClass.getSimpleName() + " is already assigned to protocol " + enumProtocol);
+            BY_ID[enumProtocol.id + 1] = enumProtocol;
+            enumProtocol.packets.forEach((direction, table) -> {
+                table.classes.forEach((integer, packetClass) -> {
+                    if (registrations.containsKey(packetClass)) {
+                        throw new Error("Packet " + packetClass.getSimpleName() + " is already assigned to protocol " + registrations.get(packetClass).protocol);
                     }
 
-                    protocols.put(packetClass, enumProtocol);
+                    registrations.put(packetClass, new Registration(enumProtocol, direction, integer));
                 });
             });
         });
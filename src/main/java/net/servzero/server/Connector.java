@@ -14,8 +14,6 @@ import net.servzero.network.NetworkHandler;
 import net.servzero.network.packet.handler.InPacketHandshakeHandler;
 import net.servzero.network.packet.serialization.PacketDecoder;
 import net.servzero.network.packet.serialization.PacketEncoder;
-import net.servzero.network.packet.serialization.PacketPrepender;
-import net.servzero.network.packet.serialization.PacketSplitter;
 import net.servzero.network.protocol.EnumProtocolDirection;
 
 import java.io.IOException;
@@ -49,12 +47,11 @@ public class Connector {
                         channel.config().setOption(ChannelOption.TCP_NODELAY, true);
 
                         NetworkHandler networkHandler = new NetworkHandler(EnumProtocolDirection.TO_SERVER);
-
+                        networkHandlers.add(networkHandler);
+                        channel.closeFuture().addListener(future -> networkHandlers.remove(networkHandler));
 
                         channel.pipeline()
-                                .addLast("splitter", new PacketSplitter())
                                 .addLast("decoder", new PacketDecoder(EnumProtocolDirection.TO_SERVER))
-                                .addLast("prepender", new PacketPrepender())
                                 .addLast("encoder", new PacketEncoder(EnumProtocolDirection.TO_CLIENT));
 
                         channel.pipeline().addLast("packet_handler", networkHandler);
@@ -67,4 +64,12 @@ public class Connector {
 
         Runtime.getRuntime().addShutdownHook(new Thread(eventLoopGroup::shutdownGracefully));
     }
+
+    public void flush() {
+        this.networkHandlers.forEach(NetworkHandler::flush);
+    }
+
+    public CopyOnWriteArrayList<NetworkHandler> getNetworkHandlers() {
+        return networkHandlers;
+    }
 }
@@ -7,32 +7,56 @@ import net.servzero.server.game.EnumGameMode;
 import net.servzero.server.game.EnumPlayerListAction;
 import net.servzero.server.player.Player;
 import net.servzero.server.player.PlayerLogoutManager;
+import net.servzero.server.scheduler.AsyncPool;
+import net.servzero.server.scheduler.TickScheduler;
+import net.servzero.server.ticker.EnumTickPhase;
 import net.servzero.server.ticker.KeepAliveTicker;
+import net.servzero.server.ticker.TickProfiler;
 import net.servzero.server.world.World;
+import net.servzero.server.world.chunk.ChunkManager;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
 
 public class Server implements Runnable {
     private static volatile Server INSTANCE = null;
 
-    public static final List<Integer> IGNORED_PACKETS = new ArrayList<>() {{
-        add(0x4D); // Advancements
-        add(0x07); // Window click
-        add(0x1B); // Creative inventory action
-        add(0x20); // Use item (not place)
-        add(0x0A); // Entity Interaction
-    }};
+    // Packets of at least this many bytes are compressed; a negative value disables compression
+    public static final int COMPRESSION_THRESHOLD = Integer.getInteger("servzero.compression.threshold", 256);
+    public static final int COMPRESSION_LEVEL = Integer.getInteger("servzero.compression.level", Deflater.DEFAULT_COMPRESSION);
+
+    // Upper bound for every player's chunk view radius, in chunks
+    public static final int VIEW_DISTANCE = Integer.getInteger("servzero.view-distance", 10);
+
+    public static final int TICKS_PER_SECOND = 20;
+    public static final long NANOS_PER_TICK = TimeUnit.SECONDS.toNanos(1) / TICKS_PER_SECOND;
+    private static final int MAX_CATCH_UP_TICKS = 10;
+    private static final int MAX_INBOUND_PACKETS_PER_TICK = 64;
+    private static final long OVERLOAD_WARNING_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    // Threads and queue cap of the shared pool for work that must stay off the main thread
+    private static final int ASYNC_THREADS = Integer.getInteger("servzero.async.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int ASYNC_QUEUE_CAPACITY = Integer.getInteger("servzero.async.queue-capacity", 1024);
 
     public final Thread mainThread;
-    public Thread keepAliveThread;
     private final Connector connector;
-    private boolean running;
+    private volatile boolean running;
+    private long tickCount = 0;
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
     private final List<Player> playerList = new ArrayList<>();
     private final World primaryWorld;
+    private final TickProfiler tickProfiler = new TickProfiler();
+    private final TickScheduler scheduler = new TickScheduler();
+    private final AsyncPool asyncPool;
 
     private Server() {
         Logger.info("Loading Server...");
@@ -40,13 +64,25 @@ public class Server implements Runnable {
         this.primaryWorld = new World("main world", EnumDimension.OVERWORLD);
 
         this.mainThread = new Thread(this, "Server thread");
+        this.asyncPool = new AsyncPool("Async worker", ASYNC_THREADS, ASYNC_QUEUE_CAPACITY, this.mainThread);
         registerWorkers();
+        registerGauges();
         Logger.info("Server loaded.");
     }
 
     private void registerWorkers() {
-        this.keepAliveThread = new Thread(new KeepAliveTicker(this), "KeepAlive thread");
-        this.keepAliveThread.start();
+        this.scheduler.runRepeating(new KeepAliveTicker(this), KeepAliveTicker.INTERVAL_TICKS, KeepAliveTicker.INTERVAL_TICKS);
+    }
+
+    private void registerGauges() {
+        final ChunkManager chunkManager = this.primaryWorld.getChunkManager();
+        this.tickProfiler.addGauge("Loaded chunks", chunkManager::getLoadedChunkCount);
+        this.tickProfiler.addGauge("Cached chunks", chunkManager::getCachedChunkCount);
+        this.tickProfiler.addGauge("Loading chunks", chunkManager::getLoadingChunkCount);
+        this.tickProfiler.addGauge("Chunks pending unload", chunkManager::getPendingUnloadCount);
+        this.tickProfiler.addGauge("Chunks pending save", chunkManager::getPendingSaveCount);
+        this.tickProfiler.addGauge("Chunk tickets", chunkManager::getTicketCount);
+        this.tickProfiler.addGauge("Chunk memory (kB)", () -> chunkManager.getMemoryUsage() / 1024);
     }
 
     public static synchronized Server getInstance() {
@@ -76,17 +112,142 @@ public class Server implements Runnable {
 
     public void run() {
         if (this.start()) {
+            long nextTickTime = System.nanoTime();
+
             while (this.running) {
-                // TODO: Run server tick
-                try {
-                    Thread.sleep(100L);
-                } catch (InterruptedException exception) {
-                    exception.printStackTrace();
+                long behind = System.nanoTime() - nextTickTime;
+
+                // Drop the backlog instead of running hundreds of ticks back to back after a long stall
+                if (behind > MAX_CATCH_UP_TICKS * NANOS_PER_TICK) {
+                    if (behind > OVERLOAD_WARNING_NANOS) {
+                        Logger.warn("Can't keep up! Running " + TimeUnit.NANOSECONDS.toMillis(behind) + "ms behind, skipping " + (behind / NANOS_PER_TICK) + " tick(s)");
+                    }
+                    nextTickTime = System.nanoTime();
+                }
+
+                // Catch up on missed ticks, but never more than MAX_CATCH_UP_TICKS in a row
+                int ticksRun = 0;
+                while (this.running && ticksRun < MAX_CATCH_UP_TICKS && System.nanoTime() - nextTickTime >= 0) {
+                    this.tick();
+                    nextTickTime += NANOS_PER_TICK;
+                    ticksRun++;
                 }
+
+                long sleepNanos = nextTickTime - System.nanoTime();
+                if (sleepNanos > 0) {
+                    LockSupport.parkNanos(this, sleepNanos);
+                }
+            }
+
+            Logger.info("Saving worlds...");
+            this.primaryWorld.close();
+
+            try {
+                this.tickProfiler.dump(TickProfiler.DUMP_FILE);
+            } catch (IOException exception) {
+                Logger.error("Could not write the tick profile: " + exception);
             }
+            this.asyncPool.shutdown(10, TimeUnit.SECONDS);
         }
     }
 
+    public void stop() {
+        this.running = false;
+    }
+
+    private void tick() {
+        this.tickCount++;
+        this.tickProfiler.startTick();
+
+        this.runPhase(EnumTickPhase.NETWORK_INPUT);
+        this.runPhase(EnumTickPhase.WORLD_TICK);
+        this.runPhase(EnumTickPhase.ENTITY_TRACKING);
+        this.runPhase(EnumTickPhase.CHUNK_SENDING);
+        this.runPhase(EnumTickPhase.OUTPUT_FLUSH);
+
+        this.tickProfiler.endTick();
+    }
+
+    private void runPhase(EnumTickPhase phase) {
+        try {
+            switch (phase) {
+                case NETWORK_INPUT:
+                    this.runPendingTasks();
+                    this.scheduler.tick();
+                    this.processInboundPackets();
+                    break;
+                case WORLD_TICK:
+                    this.primaryWorld.tick();
+                    break;
+                case ENTITY_TRACKING:
+                    this.primaryWorld.getEntityTracker().tick();
+                    break;
+                case CHUNK_SENDING:
+                    // Changes go out before new chunks, which already contain them
+                    this.primaryWorld.flushBlockChanges();
+                    for (int i = 0; i < this.playerList.size(); i++) {
+                        this.playerList.get(i).getChunkView().tick();
+                    }
+                    break;
+                case OUTPUT_FLUSH:
+                    this.connector.flush();
+                    break;
+            }
+        } catch (Throwable throwable) {
+            Logger.error("Exception in tick phase " + phase + ": " + throwable);
+            throwable.printStackTrace();
+        }
+        this.tickProfiler.endPhase(phase);
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = this.pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception exception) {
+                Logger.error("Exception in scheduled task: " + exception);
+                exception.printStackTrace();
+            }
+        }
+    }
+
+    private void processInboundPackets() {
+        for (int i = 0; i < this.playerList.size(); i++) {
+            this.playerList.get(i).getNetworkManager().processInboundPackets(MAX_INBOUND_PACKETS_PER_TICK);
+        }
+    }
+
+    /**
+     * Runs the given task on the main thread at the start of the next tick.
+     */
+    public void execute(Runnable task) {
+        this.pendingTasks.add(task);
+    }
+
+    public boolean isMainThread() {
+        return Thread.currentThread() == this.mainThread;
+    }
+
+    public long getTickCount() {
+        return this.tickCount;
+    }
+
+    public TickProfiler getTickProfiler() {
+        return this.tickProfiler;
+    }
+
+    /**
+     * Delayed and repeating tasks on the main thread; only to be used from the main thread.
+     */
+    public TickScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    public AsyncPool getAsyncPool() {
+        return this.asyncPool;
+    }
+
     public List<Player> getPlayerList() {
         return this.playerList;
     }
@@ -100,14 +261,19 @@ public class Server implements Runnable {
 
     public void registerPlayer(Player player) {
         this.playerList.add(player);
-        player.getNetworkManager().setOwner(player);
         Logger.info("Player " + player.getName() + " joined.");
     }
 
-    public void unregisterPlayer(Player player) {
-        this.playerList.remove(player);
+    /**
+     * Removes the player from the list and the world. Returns false if the player never joined.
+     */
+    public boolean unregisterPlayer(Player player) {
+        if (!this.playerList.remove(player)) {
+            return false;
+        }
         this.primaryWorld.leave(player);
         Logger.info("Player " + player.getName() + " left.");
+        return true;
     }
 
     public World getWorld() {
@@ -12,8 +12,11 @@ public class DeltaPosition {
     }
 
     public boolean isOverflow() {
-        short max = Short.MAX_VALUE;
-        return max < deltaX || max < deltaY || max < deltaZ;
+        return isOverflow(deltaX) || isOverflow(deltaY) || isOverflow(deltaZ);
+    }
+
+    private static boolean isOverflow(int delta) {
+        return delta < Short.MIN_VALUE || delta > Short.MAX_VALUE;
     }
 
     public short getDeltaX() {
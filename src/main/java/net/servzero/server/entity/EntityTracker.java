@@ -0,0 +1,197 @@
+package net.servzero.server.entity;
+
+import net.servzero.helper.AngleHelper;
+import net.servzero.network.PacketBroadcaster;
+import net.servzero.network.packet.Packet;
+import net.servzero.network.packet.out.entity.*;
+import net.servzero.network.packet.out.player.OutPacketSpawnPlayer;
+import net.servzero.server.player.Player;
+import net.servzero.server.world.Location;
+import net.servzero.server.world.World;
+
+import java.util.*;
+
+/**
+ * Synchronizes entity movement and visibility with the players of a world once per tick. Each
+ * entity gets at most one movement update per tick, computed from the net change since the
+ * state the viewers last received, and despawns are batched into one packet per viewer.
+ */
+public class EntityTracker {
+    private final World world;
+    private final Map<Entity, Entry> entries = new LinkedHashMap<>();
+    private final Map<Player, List<Integer>> pendingDestroys = new HashMap<>();
+
+    public EntityTracker(World world) {
+        this.world = world;
+    }
+
+    public void track(Entity entity) {
+        this.entries.computeIfAbsent(entity, Entry::new);
+    }
+
+    public void untrack(Entity entity) {
+        final Entry entry = this.entries.remove(entity);
+        if (entry != null) {
+            entry.viewers.forEach(viewer -> queueDestroy(viewer, entity));
+        }
+        if (entity instanceof Player) {
+            this.entries.values().forEach(other -> other.viewers.remove(entity));
+            this.pendingDestroys.remove(entity);
+        }
+    }
+
+    public void tick() {
+        this.entries.values().forEach(Entry::update);
+
+        this.pendingDestroys.forEach((viewer, entityIds) -> viewer.getNetworkManager().sendPacket(
+                new OutPacketDestroyEntities(entityIds.stream().mapToInt(Integer::intValue).toArray())
+        ));
+        this.pendingDestroys.clear();
+    }
+
+    private void queueDestroy(Player viewer, Entity entity) {
+        this.pendingDestroys.computeIfAbsent(viewer, k -> new ArrayList<>()).add(entity.getId());
+    }
+
+    private static long encodePosition(double coordinate) {
+        return (long) Math.floor(coordinate * 4096.0D);
+    }
+
+    private static boolean fitsShort(long delta) {
+        return delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE;
+    }
+
+    private class Entry {
+        private final Entity entity;
+        private final Set<Player> viewers = new HashSet<>();
+        private long syncedX;
+        private long syncedY;
+        private long syncedZ;
+        private byte syncedYaw;
+        private byte syncedPitch;
+
+        private Entry(Entity entity) {
+            this.entity = entity;
+            this.sync(entity.getLocation());
+        }
+
+        private void sync(Location location) {
+            this.syncedX = encodePosition(location.getX());
+            this.syncedY = encodePosition(location.getY());
+            this.syncedZ = encodePosition(location.getZ());
+            this.syncedYaw = AngleHelper.getAngleFromRotation(location.getYaw());
+            this.syncedPitch = AngleHelper.getAngleFromRotation(location.getPitch());
+        }
+
+        private void update() {
+            final Location location = this.entity.getLocation().clone();
+
+            final List<Entity> inRange = world.getEntityGrid().getEntitiesInRange(
+                    location,
+                    Entity.ENTITY_RENDER_DISTANCE,
+                    other -> other instanceof Player && other != this.entity
+            );
+            final Set<Player> newViewers = new HashSet<>();
+            for (Entity other : inRange) {
+                newViewers.add((Player) other);
+            }
+
+            // Viewers that left the range
+            final Iterator<Player> iterator = this.viewers.iterator();
+            while (iterator.hasNext()) {
+                final Player viewer = iterator.next();
+                if (!newViewers.remove(viewer)) {
+                    iterator.remove();
+                    queueDestroy(viewer, this.entity);
+                }
+            }
+
+            // Remaining viewers get the movement since the last sync
+            final Packet<?> movement = this.createMovementPacket(location);
+            final boolean rotated = AngleHelper.getAngleFromRotation(location.getYaw()) != this.syncedYaw;
+            if (movement != null) {
+                PacketBroadcaster.broadcast(movement, this.viewers);
+            }
+            if (rotated) {
+                PacketBroadcaster.broadcast(new OutPacketEntityHeadLook(this.entity.getId(), location.getYaw()), this.viewers);
+            }
+            this.sync(location);
+
+            // Viewers that entered the range spawn the entity at its current state
+            newViewers.forEach(viewer -> {
+                this.spawn(viewer, location);
+                this.viewers.add(viewer);
+            });
+        }
+
+        private Packet<?> createMovementPacket(Location location) {
+            final long deltaX = encodePosition(location.getX()) - this.syncedX;
+            final long deltaY = encodePosition(location.getY()) - this.syncedY;
+            final long deltaZ = encodePosition(location.getZ()) - this.syncedZ;
+            final boolean moved = deltaX != 0 || deltaY != 0 || deltaZ != 0;
+            final boolean rotated = AngleHelper.getAngleFromRotation(location.getYaw()) != this.syncedYaw
+                    || AngleHelper.getAngleFromRotation(location.getPitch()) != this.syncedPitch;
+
+            if (moved && !(fitsShort(deltaX) && fitsShort(deltaY) && fitsShort(deltaZ))) {
+                return new OutPacketEntityTeleport(
+                        this.entity.getId(),
+                        location.getX(),
+                        location.getY(),
+                        location.getZ(),
+                        location.getYaw(),
+                        location.getPitch(),
+                        this.entity.isOnGround()
+                );
+            }
+
+            final DeltaPosition delta = new DeltaPosition((int) deltaX, (int) deltaY, (int) deltaZ);
+            if (moved && rotated) {
+                return new OutPacketEntityRelativeMoveLook(
+                        this.entity.getId(),
+                        delta.getDeltaX(),
+                        delta.getDeltaY(),
+                        delta.getDeltaZ(),
+                        location.getYaw(),
+                        location.getPitch(),
+                        this.entity.isOnGround()
+                );
+            } else if (moved) {
+                return new OutPacketEntityRelativeMove(
+                        this.entity.getId(),
+                        delta.getDeltaX(),
+                        delta.getDeltaY(),
+                        delta.getDeltaZ(),
+                        this.entity.isOnGround()
+                );
+            } else if (rotated) {
+                return new OutPacketEntityLook(
+                        this.entity.getId(),
+                        location.getYaw(),
+                        location.getPitch(),
+                        this.entity.isOnGround()
+                );
+            }
+            return null;
+        }
+
+        private void spawn(Player viewer, Location location) {
+            if (this.entity instanceof Player) {
+                viewer.getNetworkManager().sendPacket(new OutPacketSpawnPlayer(
+                        this.entity.getId(),
+                        ((Player) this.entity).getUniqueId(),
+                        location.getX(),
+                        location.getY(),
+                        location.getZ(),
+                        location.getYaw(),
+                        location.getPitch()
+                ));
+                viewer.getNetworkManager().sendPacket(new OutPacketEntityHeadLook(
+                        this.entity.getId(),
+                        location.getYaw()
+                ));
+            } else {
+                // TODO: Add entity spawning and sending
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@ public class Player extends Entity {
     private final GameProfile profile;
     private ClientSettings settings = new ClientSettings();
     private final NetworkHandler networkHandler;
+    private final PlayerChunkView chunkView = new PlayerChunkView(this);
     private EnumGameMode gameMode;
 
     public Player(GameProfile profile, NetworkHandler networkHandler, EnumGameMode gameMode) {
@@ -25,6 +26,10 @@ public class Player extends Entity {
         return this.networkHandler;
     }
 
+    public PlayerChunkView getChunkView() {
+        return this.chunkView;
+    }
+
     public GameProfile getProfile() {
         return this.profile;
     }
@@ -0,0 +1,182 @@
+package net.servzero.server.player;
+
+import net.servzero.network.packet.out.OutPacketChunkData;
+import net.servzero.network.packet.out.OutPacketUnloadChunk;
+import net.servzero.server.Server;
+import net.servzero.server.world.Location;
+import net.servzero.server.world.World;
+import net.servzero.server.world.chunk.Chunk;
+import net.servzero.server.world.chunk.ChunkCoordinate;
+import net.servzero.server.world.chunk.ChunkMap;
+import net.servzero.server.world.chunk.ChunkTicket;
+import net.servzero.server.world.chunk.ChunkTicketType;
+
+/**
+ * The chunks a single player has been sent. Chunks are streamed nearest first in a square spiral
+ * around the player's chunk, a few per tick, and unloaded on the client once they leave the view.
+ * A cursor into the spiral marks the nearest chunk not sent yet; sending stops at the first chunk
+ * that is still loading, so waiting for it costs one lookup per tick.
+ * Only used from the main thread.
+ */
+public class PlayerChunkView {
+    public static final int MIN_VIEW_DISTANCE = 2;
+    public static final int MAX_VIEW_DISTANCE = 32;
+
+    // Per player and tick; whichever limit is hit first ends the tick's sending
+    private static final int MAX_CHUNKS_PER_TICK = Integer.getInteger("servzero.chunks.per-tick", 8);
+    private static final int MAX_BYTES_PER_TICK = Integer.getInteger("servzero.chunks.bytes-per-tick", 256 * 1024);
+
+    // Offsets (dx, dz) of a square spiral with radius MAX_VIEW_DISTANCE, ring by ring from the center
+    private static final int[] SPIRAL = createSpiral(MAX_VIEW_DISTANCE);
+
+    private final Player player;
+    private final ChunkMap sentChunks = new ChunkMap();
+    // Index of the next spiral offset to look at, in offsets rather than array entries
+    private int spiralCursor;
+    private World world;
+    private ChunkTicket ticket;
+    private int centerX;
+    private int centerZ;
+    private int viewDistance;
+    private boolean dirty = true;
+
+    public PlayerChunkView(Player player) {
+        this.player = player;
+        this.viewDistance = clampViewDistance(Server.VIEW_DISTANCE);
+    }
+
+    private static int[] createSpiral(int radius) {
+        final int diameter = radius * 2 + 1;
+        final int[] offsets = new int[diameter * diameter * 2];
+        int index = 0;
+        offsets[index++] = 0;
+        offsets[index++] = 0;
+        for (int ring = 1; ring <= radius; ring++) {
+            // Walk the ring's perimeter starting at its north-west corner
+            int x = -ring;
+            int z = -ring;
+            final int[][] directions = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+            for (int[] direction : directions) {
+                for (int step = 0; step < ring * 2; step++) {
+                    offsets[index++] = x;
+                    offsets[index++] = z;
+                    x += direction[0];
+                    z += direction[1];
+                }
+            }
+        }
+        return offsets;
+    }
+
+    private static int clampViewDistance(int viewDistance) {
+        return Math.max(MIN_VIEW_DISTANCE, Math.min(Math.min(viewDistance, Server.VIEW_DISTANCE), MAX_VIEW_DISTANCE));
+    }
+
+    public int getViewDistance() {
+        return viewDistance;
+    }
+
+    /**
+     * Sets the client's requested view distance, limited by the server's view distance.
+     */
+    public void setViewDistance(int viewDistance) {
+        final int clamped = clampViewDistance(viewDistance);
+        if (clamped != this.viewDistance) {
+            this.viewDistance = clamped;
+            this.dirty = true;
+        }
+    }
+
+    public boolean isChunkSent(int chunkX, int chunkZ) {
+        return this.sentChunks.contains(ChunkCoordinate.toKey(chunkX, chunkZ));
+    }
+
+    private boolean isInView(int chunkX, int chunkZ) {
+        return Math.abs(chunkX - this.centerX) <= this.viewDistance && Math.abs(chunkZ - this.centerZ) <= this.viewDistance;
+    }
+
+    /**
+     * Follows the player's chunk, unloads chunks that left the view and sends pending chunks
+     * within this tick's budget.
+     */
+    public void tick() {
+        final Location location = this.player.getLocation();
+        if (location == null) {
+            return;
+        }
+
+        final int chunkX = ((int) Math.floor(location.getX())) >> 4;
+        final int chunkZ = ((int) Math.floor(location.getZ())) >> 4;
+        if (this.world != location.getWorld()) {
+            this.clear();
+            this.world = location.getWorld();
+            this.dirty = true;
+        }
+        if (this.dirty || chunkX != this.centerX || chunkZ != this.centerZ) {
+            this.centerX = chunkX;
+            this.centerZ = chunkZ;
+            this.dirty = false;
+            this.updateView();
+        }
+
+        this.sendPendingChunks();
+    }
+
+    private void updateView() {
+        for (Chunk chunk : this.sentChunks.values()) {
+            if (!isInView(chunk.getX(), chunk.getZ())) {
+                this.sentChunks.remove(chunk.getKey());
+                this.player.getNetworkManager().sendPacket(new OutPacketUnloadChunk(chunk.getX(), chunk.getZ()));
+            }
+        }
+
+        // Take the new ticket before dropping the old one so overlapping chunks never become unticketed
+        final ChunkTicket previous = this.ticket;
+        this.ticket = this.world.getChunkManager().addTicket(ChunkTicketType.PLAYER, this.centerX, this.centerZ, this.viewDistance);
+        this.world.getChunkManager().removeTicket(previous);
+
+        // Start over from the new center so the nearest missing chunks go out first
+        this.spiralCursor = 0;
+    }
+
+    private void sendPendingChunks() {
+        final int diameter = this.viewDistance * 2 + 1;
+        final int end = diameter * diameter;
+        int chunks = 0;
+        int bytes = 0;
+        while (this.spiralCursor < end && chunks < MAX_CHUNKS_PER_TICK && bytes < MAX_BYTES_PER_TICK) {
+            final int x = this.centerX + SPIRAL[this.spiralCursor * 2];
+            final int z = this.centerZ + SPIRAL[this.spiralCursor * 2 + 1];
+            if (this.sentChunks.contains(ChunkCoordinate.toKey(x, z))) {
+                this.spiralCursor++;
+                continue;
+            }
+
+            final Chunk chunk = this.world.getChunkAt(x, z);
+            if (chunk == null) {
+                // Still loading; everything behind it is further away and waits for it
+                break;
+            }
+
+            final OutPacketChunkData packet = new OutPacketChunkData(chunk);
+            bytes += packet.getSizeHint();
+            chunks++;
+            this.sentChunks.put(chunk);
+            this.player.getNetworkManager().sendPacket(packet);
+            this.spiralCursor++;
+        }
+    }
+
+    /**
+     * Forgets every sent chunk without notifying the client and releases the player's chunk ticket,
+     * e.g. on disconnect or world change.
+     */
+    public void clear() {
+        if (this.ticket != null) {
+            this.world.getChunkManager().removeTicket(this.ticket);
+            this.ticket = null;
+        }
+        this.sentChunks.clear();
+        this.spiralCursor = 0;
+    }
+}
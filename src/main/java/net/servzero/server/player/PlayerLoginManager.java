@@ -1,5 +1,6 @@
 package net.servzero.server.player;
 
+import net.servzero.network.PacketBroadcaster;
 import net.servzero.network.packet.handler.InPacketPlayHandler;
 import net.servzero.network.packet.out.*;
 import net.servzero.network.packet.out.player.OutPacketPlayerPositionLook;
@@ -17,9 +18,14 @@ public class PlayerLoginManager {
     public static void login(Player player) {
         // Create Profile and Spawn Location to Spawn the player at
         GameProfile profile = player.getProfile();
-        Location spawnLocation = Location.get(Server.getInstance().getWorld(), 0, 1, 0, 0, 0);
+        Location spawnLocation = Server.getInstance().getWorld().getSpawnLocation();
 
-        // Register the player (add to list and set networkmanager's owner)
+        // The client left while the login was queued; its logout task follows this one
+        if (!player.getNetworkManager().isConnected()) {
+            return;
+        }
+
+        // Register the player (add to list)
         Server.getInstance().registerPlayer(player);
 
         // TODO: Send real information
@@ -43,10 +49,6 @@ public class PlayerLoginManager {
         player.getNetworkManager().sendPacket(new OutPacketHeldItemChange(0));
         player.getNetworkManager().sendPacket(new OutPacketDifficulty(EnumDifficulty.PEACEFUL));
 
-        // Send the player the world's chunks
-        // TODO: Only send spawn coordinates near chunks
-        player.getNetworkManager().sendPacket(new OutPacketChunkData(Server.getInstance().getWorld().getSpawnChunk(spawnLocation)));
-
         // Send the player its position and rotation (closes downloading terrain screen)
         player.getNetworkManager().sendPacket(new OutPacketPlayerPositionLook(
                 spawnLocation.getX(),
@@ -73,21 +75,19 @@ public class PlayerLoginManager {
         ));
 
         // Send the other players the information about the player
-        onlinePlayerList.stream().filter(onlinePlayer -> !onlinePlayer.equals(player)).forEach(onlinePlayer -> {
-            onlinePlayer.getNetworkManager().sendPacket(new OutPacketPlayerListItem(
-                    EnumPlayerListAction.ADD_PLAYER,
-                    1,
-                    new ArrayList<>() {{
-                        add(new OutPacketPlayerListItem.PlayerListItem(
-                                player.getUniqueId(),
-                                20,
-                                player.getGameMode(),
-                                player.getProfile(),
-                                player.getName()
-                        ));
-                    }}
-            ));
-        });
+        PacketBroadcaster.broadcast(new OutPacketPlayerListItem(
+                EnumPlayerListAction.ADD_PLAYER,
+                1,
+                new ArrayList<>() {{
+                    add(new OutPacketPlayerListItem.PlayerListItem(
+                            player.getUniqueId(),
+                            20,
+                            player.getGameMode(),
+                            player.getProfile(),
+                            player.getName()
+                    ));
+                }}
+        ), onlinePlayerList, player);
 
         // Send the player his abilities
         player.getNetworkManager().sendPacket(new OutPacketPlayerAbilities(true, false, false, false, 0.1F, 0.0F));
@@ -95,8 +95,7 @@ public class PlayerLoginManager {
         // Add the player to the world and send him information about the other players and the other players information about him
         Server.getInstance().getWorld().spawn(player, spawnLocation);
 
-        // Send remaining chunks
-        Server.getInstance().getWorld().getChunkList().forEach(chunk -> player.getNetworkManager().sendPacket(new OutPacketChunkData(chunk)));
+        // Chunks around the spawn are streamed by the player's chunk view from this tick on
 
         // Send inventory items
         // TODO: Send player inventory instead of hardcoded stone
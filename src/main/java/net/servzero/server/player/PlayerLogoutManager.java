@@ -1,5 +1,6 @@
 package net.servzero.server.player;
 
+import net.servzero.network.PacketBroadcaster;
 import net.servzero.network.packet.out.OutPacketPlayerListItem;
 import net.servzero.server.Server;
 import net.servzero.server.game.EnumGameMode;
@@ -9,7 +10,7 @@ import java.util.ArrayList;
 
 public class PlayerLogoutManager {
     public static void handleLogout(Player player) {
-        Server.getInstance().getPlayerList().forEach(onlinePlayer -> onlinePlayer.getNetworkManager().sendPacket(new OutPacketPlayerListItem(
+        PacketBroadcaster.broadcast(new OutPacketPlayerListItem(
                 EnumPlayerListAction.REMOVE_PLAYER,
                 1,
                 new ArrayList<>() {{
@@ -21,6 +22,6 @@ public class PlayerLogoutManager {
                             player.getName()
                     ));
                 }}
-        )));
+        ), Server.getInstance().getPlayerList());
     }
 }
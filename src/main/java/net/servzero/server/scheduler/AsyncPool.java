@@ -0,0 +1,167 @@
+package net.servzero.server.scheduler;
+
+import net.servzero.logger.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The server's pool for work that must stay off the main thread. A work-stealing pool with a
+ * fixed number of threads and a cap on queued tasks: once the cap is reached, a new task runs on
+ * the thread submitting it, which slows the producer down instead of letting the queue grow
+ * without bound. The main thread must never stall on such work, so its overflow is set aside
+ * instead and handed to the pool as soon as queued tasks finish.
+ */
+public class AsyncPool implements Executor {
+    private final ForkJoinPool pool;
+    private final int capacity;
+    private final Thread mainThread;
+    private final Queue<Runnable> deferred = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder deferrals = new LongAdder();
+
+    public AsyncPool(String name, int threads, int capacity, Thread mainThread) {
+        final AtomicInteger counter = new AtomicInteger();
+        this.pool = new ForkJoinPool(threads, forkJoinPool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName(name + " #" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true);
+        this.capacity = capacity;
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * Queues the task, or runs it right here if the pool is full and this is not the main thread.
+     *
+     * @throws RejectedExecutionException if the pool has been shut down
+     */
+    @Override
+    public void execute(Runnable task) {
+        final int depth = this.queued.incrementAndGet();
+        if (depth > this.capacity) {
+            this.queued.decrementAndGet();
+            if (Thread.currentThread() == this.mainThread) {
+                this.deferrals.increment();
+                this.deferred.add(task);
+                // The queued tasks may all have finished before the add above
+                this.submitDeferred();
+            } else {
+                this.callerRuns.increment();
+                this.run(task);
+            }
+            return;
+        }
+        this.peakQueued.accumulateAndGet(depth, Math::max);
+        this.submit(task);
+    }
+
+    // Expects the task to be counted in queued already
+    private void submit(Runnable task) {
+        try {
+            this.pool.execute(() -> {
+                this.queued.decrementAndGet();
+                this.run(task);
+                this.submitDeferred();
+            });
+        } catch (RuntimeException exception) {
+            this.queued.decrementAndGet();
+            throw exception;
+        }
+    }
+
+    private void submitDeferred() {
+        while (!this.deferred.isEmpty()) {
+            if (this.queued.incrementAndGet() > this.capacity) {
+                this.queued.decrementAndGet();
+                return;
+            }
+            final Runnable task = this.deferred.poll();
+            if (task == null) {
+                this.queued.decrementAndGet();
+                return;
+            }
+            try {
+                this.submit(task);
+            } catch (RejectedExecutionException exception) {
+                Logger.warn("Async pool is shut down, dropping a deferred task");
+                return;
+            }
+        }
+    }
+
+    private void run(Runnable task) {
+        this.running.incrementAndGet();
+        try {
+            task.run();
+        } catch (Throwable throwable) {
+            Logger.error("Exception in async task: " + throwable);
+            throwable.printStackTrace();
+        } finally {
+            this.running.decrementAndGet();
+            this.completed.increment();
+        }
+    }
+
+    /**
+     * Lets queued tasks finish, waiting at most the given time.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        this.pool.shutdown();
+        try {
+            if (!this.pool.awaitTermination(timeout, unit)) {
+                Logger.warn("Async pool did not finish within " + unit.toMillis(timeout) + "ms, "
+                        + (this.queued.get() + this.deferred.size()) + " task(s) dropped");
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getQueuedTaskCount() {
+        return this.queued.get();
+    }
+
+    public int getRunningTaskCount() {
+        return this.running.get();
+    }
+
+    public int getPeakQueuedTaskCount() {
+        return this.peakQueued.get();
+    }
+
+    public long getCompletedTaskCount() {
+        return this.completed.sum();
+    }
+
+    // Tasks that found the queue full and ran on the submitting thread
+    public long getCallerRunCount() {
+        return this.callerRuns.sum();
+    }
+
+    // Tasks from the main thread that found the queue full and waited for room instead
+    public long getDeferredCount() {
+        return this.deferrals.sum();
+    }
+
+    public long getStealCount() {
+        return this.pool.getStealCount();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,38 @@
+package net.servzero.server.scheduler;
+
+/**
+ * A task waiting in the {@link TickScheduler}'s wheel. Cancelling is cheap: the task is only
+ * flagged and dropped the next time the wheel passes its slot.
+ */
+public class ScheduledTask {
+    private final Runnable task;
+    private final long period;
+    long deadline;
+    private boolean cancelled;
+
+    ScheduledTask(Runnable task, long deadline, long period) {
+        this.task = task;
+        this.deadline = deadline;
+        this.period = period;
+    }
+
+    void run() {
+        this.task.run();
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isRepeating() {
+        return this.period > 0;
+    }
+
+    long getPeriod() {
+        return period;
+    }
+}
@@ -0,0 +1,97 @@
+package net.servzero.server.scheduler;
+
+import net.servzero.logger.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delayed and repeating tasks for the main thread, measured in ticks. Tasks hang in a hashed
+ * timing wheel: the slot is the deadline modulo the wheel size, so scheduling is O(1) and every
+ * tick only looks at one slot, in which tasks due in a later rotation are simply skipped.
+ * <p>
+ * Main thread only; other threads hand their tasks over with {@code Server.execute} first.
+ */
+public class TickScheduler {
+    // A power of two, about 25 seconds of ticks per rotation
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<ScheduledTask>[] wheel = new List[WHEEL_SIZE];
+    private long currentTick;
+    private int taskCount;
+
+    public TickScheduler() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            this.wheel[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Runs the task once, {@code delayTicks} ticks from now; anything below one means the next tick.
+     */
+    public ScheduledTask runLater(Runnable task, long delayTicks) {
+        return this.insert(new ScheduledTask(task, this.currentTick + Math.max(1, delayTicks), 0));
+    }
+
+    /**
+     * Runs the task every {@code periodTicks} ticks, the first time {@code delayTicks} ticks from now.
+     */
+    public ScheduledTask runRepeating(Runnable task, long delayTicks, long periodTicks) {
+        if (periodTicks <= 0) {
+            throw new IllegalArgumentException("Period must be at least one tick, was " + periodTicks);
+        }
+        return this.insert(new ScheduledTask(task, this.currentTick + Math.max(1, delayTicks), periodTicks));
+    }
+
+    private ScheduledTask insert(ScheduledTask task) {
+        this.wheel[(int) (task.deadline & WHEEL_MASK)].add(task);
+        this.taskCount++;
+        return task;
+    }
+
+    /**
+     * Advances the wheel by one tick and runs everything that became due.
+     */
+    public void tick() {
+        this.currentTick++;
+        final List<ScheduledTask> slot = this.wheel[(int) (this.currentTick & WHEEL_MASK)];
+
+        // Removal swaps the last task in, so the index only moves on past tasks that stay
+        int i = 0;
+        while (i < slot.size()) {
+            final ScheduledTask task = slot.get(i);
+            if (!task.isCancelled() && task.deadline > this.currentTick) {
+                i++;
+                continue;
+            }
+
+            final int last = slot.size() - 1;
+            slot.set(i, slot.get(last));
+            slot.remove(last);
+            this.taskCount--;
+            if (task.isCancelled()) {
+                continue;
+            }
+
+            try {
+                task.run();
+            } catch (Throwable throwable) {
+                Logger.error("Exception in scheduled task: " + throwable);
+                throwable.printStackTrace();
+            }
+            if (task.isRepeating() && !task.isCancelled()) {
+                task.deadline += task.getPeriod();
+                this.insert(task);
+            }
+        }
+    }
+
+    /**
+     * Tasks waiting in the wheel, including cancelled ones the wheel has not passed yet.
+     */
+    public int getTaskCount() {
+        return taskCount;
+    }
+}
@@ -0,0 +1,9 @@
+package net.servzero.server.ticker;
+
+public enum EnumTickPhase {
+    NETWORK_INPUT,
+    WORLD_TICK,
+    ENTITY_TRACKING,
+    CHUNK_SENDING,
+    OUTPUT_FLUSH
+}
@@ -3,7 +3,13 @@ package net.servzero.server.ticker;
 import net.servzero.network.packet.out.OutPacketKeepAlive;
 import net.servzero.server.Server;
 
+/**
+ * Sends every player a keep alive. Runs on the main thread as a repeating tick task.
+ */
 public class KeepAliveTicker implements Runnable {
+    // Every five seconds
+    public static final long INTERVAL_TICKS = 5L * Server.TICKS_PER_SECOND;
+
     private final Server server;
 
     public KeepAliveTicker(Server server) {
@@ -12,15 +18,6 @@ public class KeepAliveTicker implements Runnable {
 
     @Override
     public void run() {
-        while (true) {
-            server.getPlayerList().forEach(player -> {
-                player.getNetworkManager().sendPacket(new OutPacketKeepAlive());
-            });
-            try {
-                Thread.sleep(5000L);
-            } catch (InterruptedException exception) {
-                exception.printStackTrace();
-            }
-        }
+        server.getPlayerList().forEach(player -> player.getNetworkManager().sendPacket(new OutPacketKeepAlive()));
     }
 }
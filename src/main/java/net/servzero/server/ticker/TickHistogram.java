@@ -0,0 +1,69 @@
+package net.servzero.server.ticker;
+
+/**
+ * A log-linear histogram of nanosecond durations in the style of HdrHistogram: every power of two
+ * is split into 64 buckets, so percentiles are accurate to 1.6% at any magnitude while recording
+ * stays a couple of shifts and an increment. Not thread-safe; the main thread owns it.
+ */
+public class TickHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // About 18 minutes, far beyond any tick that still completes
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    private static int indexOf(long value) {
+        final int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    // Highest value that falls into the bucket
+    private static long valueOf(int index) {
+        if (index < SUB_BUCKETS * 2) {
+            return index;
+        }
+        final int shift = (index >> SUB_BUCKET_BITS) - 1;
+        final long mantissa = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        final long value = Math.min(Math.max(nanos, 0L), MAX_VALUE);
+        this.counts[indexOf(value)]++;
+        this.count++;
+        this.sum += value;
+        this.max = Math.max(this.max, value);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return this.count == 0 ? 0.0D : this.sum / (double) this.count;
+    }
+
+    public long getPercentile(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(this.count * percentile / 100.0D));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return Math.min(valueOf(i), this.max);
+            }
+        }
+        return this.max;
+    }
+}
@@ -0,0 +1,240 @@
+package net.servzero.server.ticker;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import net.servzero.server.Server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Times every tick and each of its phases. Recording is two clock reads and a few array stores
+ * per phase; the rolling windows are computed from a ring of the last fifteen minutes of ticks
+ * only when somebody asks for them. Main thread only.
+ */
+public class TickProfiler {
+    public static final Path DUMP_FILE = Paths.get(System.getProperty("servzero.profiler.dump-file", "tick-profile.json"));
+
+    private static final EnumTickPhase[] PHASES = EnumTickPhase.values();
+    // Every tick of the longest window at full speed
+    private static final int HISTORY = (int) (TimeUnit.MINUTES.toSeconds(15) * Server.TICKS_PER_SECOND);
+
+    public enum Window {
+        FIVE_SECONDS("5s", TimeUnit.SECONDS.toNanos(5)),
+        ONE_MINUTE("1m", TimeUnit.MINUTES.toNanos(1)),
+        FIFTEEN_MINUTES("15m", TimeUnit.MINUTES.toNanos(15));
+
+        private final String label;
+        private final long nanos;
+
+        Window(String label, long nanos) {
+            this.label = label;
+            this.nanos = nanos;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final long[] tickStarts = new long[HISTORY];
+    private final long[] tickDurations = new long[HISTORY];
+    private final long[][] phaseDurations = new long[PHASES.length][HISTORY];
+    private final TickHistogram allTimeTicks = new TickHistogram();
+    private final TickHistogram[] allTimePhases = new TickHistogram[PHASES.length];
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+
+    private long ticks;
+    private long firstTickStart;
+    private long tickStart;
+    private long phaseStart;
+
+    public TickProfiler() {
+        for (int i = 0; i < PHASES.length; i++) {
+            this.allTimePhases[i] = new TickHistogram();
+        }
+    }
+
+    /**
+     * Adds a value that is read whenever a report or dump is made, like the number of loaded chunks.
+     */
+    public void addGauge(String name, LongSupplier gauge) {
+        this.gauges.put(name, gauge);
+    }
+
+    public void startTick() {
+        this.tickStart = this.phaseStart = System.nanoTime();
+        if (this.ticks == 0) {
+            this.firstTickStart = this.tickStart;
+        }
+    }
+
+    public void endPhase(EnumTickPhase phase) {
+        final long now = System.nanoTime();
+        final long duration = now - this.phaseStart;
+        this.phaseDurations[phase.ordinal()][(int) (this.ticks % HISTORY)] = duration;
+        this.allTimePhases[phase.ordinal()].record(duration);
+        this.phaseStart = now;
+    }
+
+    public void endTick() {
+        final int slot = (int) (this.ticks % HISTORY);
+        final long duration = this.phaseStart - this.tickStart;
+        this.tickStarts[slot] = this.tickStart;
+        this.tickDurations[slot] = duration;
+        this.allTimeTicks.record(duration);
+        this.ticks++;
+    }
+
+    /**
+     * Ticks per second and the tick and phase durations of the ticks that started within the window.
+     */
+    public Summary summarize(Window window) {
+        final Summary summary = new Summary(window);
+        if (this.ticks == 0) {
+            return summary;
+        }
+
+        final long now = System.nanoTime();
+        final long windowStart = now - window.nanos;
+        final long recorded = Math.min(this.ticks, HISTORY);
+        for (long i = 0; i < recorded; i++) {
+            final int slot = (int) ((this.ticks - 1 - i) % HISTORY);
+            if (this.tickStarts[slot] - windowStart < 0) {
+                break;
+            }
+            summary.ticks.record(this.tickDurations[slot]);
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                summary.phases[phase].record(this.phaseDurations[phase][slot]);
+            }
+        }
+
+        // Right after startup the window is only as long as the server has been ticking
+        final long covered = Math.min(window.nanos, now - this.firstTickStart);
+        summary.tps = covered <= 0 ? 0.0D : summary.ticks.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / covered;
+        return summary;
+    }
+
+    /**
+     * The human readable report behind /tps, one chat line per entry.
+     */
+    public List<String> report() {
+        final Summary[] summaries = new Summary[Window.values().length];
+        for (Window window : Window.values()) {
+            summaries[window.ordinal()] = this.summarize(window);
+        }
+
+        final List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT, "TPS (5s, 1m, 15m): %.2f, %.2f, %.2f",
+                summaries[0].tps, summaries[1].tps, summaries[2].tps));
+        for (Summary summary : summaries) {
+            lines.add("MSPT " + summary.window.label + ": " + format(summary.ticks));
+        }
+        final Summary lastMinute = summaries[Window.ONE_MINUTE.ordinal()];
+        for (EnumTickPhase phase : PHASES) {
+            lines.add("  " + phase.name().toLowerCase(Locale.ROOT).replace('_', ' ') + " (1m): " + format(lastMinute.phases[phase.ordinal()]));
+        }
+        for (Map.Entry<String, LongSupplier> gauge : this.gauges.entrySet()) {
+            lines.add(gauge.getKey() + ": " + gauge.getValue().getAsLong());
+        }
+        return lines;
+    }
+
+    private static String format(TickHistogram histogram) {
+        return String.format(Locale.ROOT, "mean %.2f, p50 %.2f, p95 %.2f, p99 %.2f, max %.2f ms",
+                millis(histogram.getMean()), millis(histogram.getPercentile(50)), millis(histogram.getPercentile(95)),
+                millis(histogram.getPercentile(99)), millis(histogram.getMax()));
+    }
+
+    public void dump(Path file) throws IOException {
+        Files.write(file, this.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Every window, the all-time numbers and the current gauge values as JSON, durations in milliseconds.
+     */
+    public String toJson() {
+        final JsonObject root = new JsonObject();
+        root.addProperty("ticks", this.ticks);
+
+        final JsonObject windows = new JsonObject();
+        for (Window window : Window.values()) {
+            final Summary summary = this.summarize(window);
+            final JsonObject json = toJson(summary.ticks, summary.phases);
+            json.addProperty("tps", summary.tps);
+            windows.add(window.label, json);
+        }
+        root.add("windows", windows);
+        root.add("allTime", toJson(this.allTimeTicks, this.allTimePhases));
+
+        final JsonObject gauges = new JsonObject();
+        for (Map.Entry<String, LongSupplier> gauge : this.gauges.entrySet()) {
+            gauges.addProperty(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        root.add("gauges", gauges);
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(root);
+    }
+
+    private static JsonObject toJson(TickHistogram ticks, TickHistogram[] phases) {
+        final JsonObject json = new JsonObject();
+        json.addProperty("count", ticks.getCount());
+        json.add("mspt", toJson(ticks));
+        final JsonObject phasesJson = new JsonObject();
+        for (EnumTickPhase phase : PHASES) {
+            phasesJson.add(phase.name().toLowerCase(Locale.ROOT), toJson(phases[phase.ordinal()]));
+        }
+        json.add("phases", phasesJson);
+        return json;
+    }
+
+    private static JsonObject toJson(TickHistogram histogram) {
+        final JsonObject json = new JsonObject();
+        json.addProperty("mean", millis(histogram.getMean()));
+        json.addProperty("p50", millis(histogram.getPercentile(50)));
+        json.addProperty("p95", millis(histogram.getPercentile(95)));
+        json.addProperty("p99", millis(histogram.getPercentile(99)));
+        json.addProperty("max", millis(histogram.getMax()));
+        return json;
+    }
+
+    private static double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public static class Summary {
+        private final Window window;
+        private final TickHistogram ticks = new TickHistogram();
+        private final TickHistogram[] phases = new TickHistogram[PHASES.length];
+        private double tps;
+
+        private Summary(Window window) {
+            this.window = window;
+            for (int i = 0; i < PHASES.length; i++) {
+                this.phases[i] = new TickHistogram();
+            }
+        }
+
+        public double getTps() {
+            return tps;
+        }
+
+        public TickHistogram getTicks() {
+            return ticks;
+        }
+
+        public TickHistogram getPhase(EnumTickPhase phase) {
+            return phases[phase.ordinal()];
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package net.servzero.server.world;
+
+import net.servzero.server.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Spatial hash of the entities in a world, bucketed by the 16x16x16 chunk section they are in.
+ * Range queries only visit the cells overlapping the query box instead of every entity. Cells are
+ * kept in an open addressing table keyed by the packed cell coordinate, so probing the empty cells
+ * of a query box neither boxes nor allocates. Main thread only.
+ */
+public class EntityGrid {
+    private static final int CELL_SHIFT = 4;
+
+    private final CellMap cells = new CellMap();
+    private final Map<Entity, Long> entityCells = new HashMap<>();
+
+    private static int toCell(double coordinate) {
+        return (int) Math.floor(coordinate) >> CELL_SHIFT;
+    }
+
+    private static long getKey(int cellX, int cellY, int cellZ) {
+        return ((long) (cellX & 0x3FFFFF) << 42) | ((long) (cellZ & 0x3FFFFF) << 20) | (cellY & 0xFFFFF);
+    }
+
+    private static long getKey(Location location) {
+        return getKey(toCell(location.getX()), toCell(location.getY()), toCell(location.getZ()));
+    }
+
+    public void add(Entity entity) {
+        final long key = getKey(entity.getLocation());
+        final Long previous = this.entityCells.put(entity, key);
+        if (previous != null) {
+            removeFromCell(entity, previous);
+        }
+        this.cells.getOrCreate(key).add(entity);
+    }
+
+    public void remove(Entity entity) {
+        final Long key = this.entityCells.remove(entity);
+        if (key != null) {
+            removeFromCell(entity, key);
+        }
+    }
+
+    /**
+     * Moves the entity to the cell of its current location, if it changed.
+     */
+    public void update(Entity entity) {
+        final Long previous = this.entityCells.get(entity);
+        if (previous == null) {
+            return;
+        }
+        final long key = getKey(entity.getLocation());
+        if (previous != key) {
+            removeFromCell(entity, previous);
+            this.entityCells.put(entity, key);
+            this.cells.getOrCreate(key).add(entity);
+        }
+    }
+
+    private void removeFromCell(Entity entity, long key) {
+        final Cell cell = this.cells.get(key);
+        if (cell != null) {
+            cell.remove(entity);
+            if (cell.isEmpty()) {
+                this.cells.remove(cell);
+            }
+        }
+    }
+
+    /**
+     * Returns every entity within {@code range} blocks (euclidean) of the location.
+     */
+    public List<Entity> getEntitiesInRange(Location center, double range) {
+        return getEntitiesInRange(center, range, entity -> true);
+    }
+
+    public List<Entity> getEntitiesInRange(Location center, double range, Predicate<Entity> filter) {
+        final List<Entity> result = new ArrayList<>();
+        final double x = center.getX();
+        final double y = center.getY();
+        final double z = center.getZ();
+        final double rangeSquared = range * range;
+
+        final int minX = toCell(x - range), maxX = toCell(x + range);
+        final int minY = toCell(y - range), maxY = toCell(y + range);
+        final int minZ = toCell(z - range), maxZ = toCell(z + range);
+
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                for (int cellY = minY; cellY <= maxY; cellY++) {
+                    final Cell cell = this.cells.get(getKey(cellX, cellY, cellZ));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Entity entity : cell) {
+                        final Location location = entity.getLocation();
+                        final double dx = location.getX() - x;
+                        final double dy = location.getY() - y;
+                        final double dz = location.getZ() - z;
+                        if (dx * dx + dy * dy + dz * dz <= rangeSquared && filter.test(entity)) {
+                            result.add(entity);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return this.entityCells.size();
+    }
+
+    private static final class Cell extends ArrayList<Entity> {
+        private final long key;
+
+        private Cell(long key) {
+            super(4);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Linear probing table of cells, the key is read from the cell itself. Removal shifts the
+     * following entries back instead of leaving tombstones, since cells come and go all the time.
+     */
+    private static final class CellMap {
+        private Cell[] table = new Cell[64];
+        private int size;
+
+        private static int hash(long key) {
+            key ^= key >>> 33;
+            key *= 0xFF51AFD7ED558CCDL;
+            key ^= key >>> 33;
+            key *= 0xC4CEB9FE1A85EC53L;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+
+        Cell get(long key) {
+            final Cell[] table = this.table;
+            final int mask = table.length - 1;
+            for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+                final Cell cell = table[index];
+                if (cell == null || cell.key == key) {
+                    return cell;
+                }
+            }
+        }
+
+        Cell getOrCreate(long key) {
+            final Cell existing = this.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if ((this.size + 1) * 4 > this.table.length * 3) {
+                this.rehash(this.table.length * 2);
+            }
+            final Cell cell = new Cell(key);
+            insert(this.table, cell);
+            this.size++;
+            return cell;
+        }
+
+        private static void insert(Cell[] table, Cell cell) {
+            final int mask = table.length - 1;
+            int index = hash(cell.key) & mask;
+            while (table[index] != null) {
+                index = (index + 1) & mask;
+            }
+            table[index] = cell;
+        }
+
+        void remove(Cell cell) {
+            final Cell[] table = this.table;
+            final int mask = table.length - 1;
+            int index = hash(cell.key) & mask;
+            while (table[index] != cell) {
+                if (table[index] == null) {
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            table[index] = null;
+            this.size--;
+
+            // Move back every later entry of the run that could no longer be reached past the gap
+            int gap = index;
+            for (int next = (gap + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+                final int home = hash(table[next].key) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    table[gap] = table[next];
+                    table[next] = null;
+                    gap = next;
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            final Cell[] newTable = new Cell[capacity];
+            for (Cell cell : this.table) {
+                if (cell != null) {
+                    insert(newTable, cell);
+                }
+            }
+            this.table = newTable;
+        }
+    }
+}
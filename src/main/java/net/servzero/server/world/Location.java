@@ -42,7 +42,7 @@ public class Location {
         return x;
     }
 
-    public synchronized void setX(double x) {
+    public void setX(double x) {
         this.x = x;
     }
 
@@ -50,7 +50,7 @@ public class Location {
         return y;
     }
 
-    public synchronized void setY(double y) {
+    public void setY(double y) {
         this.y = y;
     }
 
@@ -58,7 +58,7 @@ public class Location {
         return z;
     }
 
-    public synchronized void setZ(double z) {
+    public void setZ(double z) {
         this.z = z;
     }
 
@@ -66,7 +66,7 @@ public class Location {
         return yaw;
     }
 
-    public synchronized void setYaw(float yaw) {
+    public void setYaw(float yaw) {
         this.yaw = yaw;
     }
 
@@ -74,7 +74,7 @@ public class Location {
         return pitch;
     }
 
-    public synchronized void setPitch(float pitch) {
+    public void setPitch(float pitch) {
         this.pitch = pitch;
     }
 
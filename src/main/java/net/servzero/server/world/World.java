@@ -1,86 +1,123 @@
 package net.servzero.server.world;
 
-import net.servzero.helper.Schedulers;
+import net.servzero.network.PacketBroadcaster;
 import net.servzero.network.packet.Packet;
-import net.servzero.network.packet.out.entity.OutPacketDestroyEntities;
-import net.servzero.network.packet.out.entity.OutPacketEntityHeadLook;
-import net.servzero.network.packet.out.player.OutPacketSpawnPlayer;
 import net.servzero.server.Server;
 import net.servzero.server.entity.Entity;
+import net.servzero.server.entity.EntityTracker;
 import net.servzero.server.game.EnumDimension;
 import net.servzero.server.player.Player;
 import net.servzero.server.world.block.Block;
-import net.servzero.server.world.block.Blocks;
 import net.servzero.server.world.block.Position;
 import net.servzero.server.world.chunk.Chunk;
-import net.servzero.server.world.chunk.ChunkCoordinate;
-
+import net.servzero.server.world.chunk.ChunkManager;
+import net.servzero.server.world.chunk.ChunkTicketType;
+import net.servzero.server.world.generator.ChunkGenerator;
+import net.servzero.server.world.generator.DefaultChunkGenerator;
+import net.servzero.server.world.generator.NoiseChunkGenerator;
+import net.servzero.server.world.light.LightEngine;
+import net.servzero.server.world.storage.AnvilChunkStorage;
+import net.servzero.server.world.storage.AsyncChunkStorage;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class World {
+    private static final int SPAWN_TICKET_LEVEL = 2;
+    // "noise" for terrain, "flat" for the fenced stone platform
+    private static final String GENERATOR = System.getProperty("servzero.world.generator", "noise");
+    // Time per tick the light engine may spend; leftover work continues in the next tick
+    private static final long LIGHT_BUDGET_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("servzero.light.budget-micros", 2000L));
+    private static final String WORLD_DIRECTORY = System.getProperty("servzero.world.directory", "world");
+
     private final String name;
     private final EnumDimension dimension;
     private final List<Entity> entityList = new ArrayList<>();
-    private final Map<ChunkCoordinate, Chunk> chunkMap = new HashMap<>();
+    private final EntityGrid entityGrid = new EntityGrid();
+    private final EntityTracker entityTracker = new EntityTracker(this);
+    private final ChunkManager chunkManager;
+    private final LightEngine lightEngine;
+    // Chunks with block changes that have not been sent yet
+    private final List<Chunk> changedChunks = new ArrayList<>();
 
     public World(String name, EnumDimension dimension) {
+        this(name, dimension, Paths.get(WORLD_DIRECTORY));
+    }
+
+    /**
+     * Creates a world whose chunks are saved in the given directory instead of the configured one.
+     */
+    public World(String name, EnumDimension dimension, Path directory) {
         this.name = name;
         this.dimension = dimension;
+        this.chunkManager = new ChunkManager(this, createGenerator(name), new AsyncChunkStorage(new AnvilChunkStorage(directory)));
+        this.lightEngine = new LightEngine(this.chunkManager::getChunk);
     }
 
     public void load() {
-        generate();
-    }
-
-    private void addChunk(Chunk chunk) {
-        chunkMap.put(chunk.getCoordinate(), chunk);
-    }
-
-    public void generate() {
-        // TODO: Implement world generation
-
-        // Walking chunks
-        addChunk(new Chunk(this, 0, 0));
-        addChunk(new Chunk(this, 0, -1));
-        addChunk(new Chunk(this, -1, 0));
-        addChunk(new Chunk(this, -1, -1));
-
-        // Border chunks
-        addChunk(new Chunk(this, 1, 1));
-        addChunk(new Chunk(this, 0, 1));
-        addChunk(new Chunk(this, -1, 1));
-        addChunk(new Chunk(this, -2, 1));
-        addChunk(new Chunk(this, -2, 0));
-        addChunk(new Chunk(this, -2, -1));
-        addChunk(new Chunk(this, -2, -2));
-        addChunk(new Chunk(this, -1, -2));
-        addChunk(new Chunk(this, 0, -2));
-        addChunk(new Chunk(this, 1, -2));
-        addChunk(new Chunk(this, 1, -1));
-        addChunk(new Chunk(this, 1, 0));
-
-        chunkMap.values().forEach(chunk -> {
-            if (chunk.getX() < 1 && chunk.getX() >= -1 && chunk.getZ() < 1 && chunk.getZ() >= -1) {
-                final int y = 0;
-                for (int x = 0; x < 16; x++) {
-                    for (int z = 0; z < 16; z++) {
-                        chunk.setChunkBlock(Position.get(x, y, z), Blocks.STONE);
-                    }
-                }
-            } else {
-                for (int y = 0; y < 4; y++) {
-                    for (int x = 0; x < 16; x++) {
-                        for (int z = 0; z < 16; z++) {
-                            chunk.setChunkBlock(Position.get(x, y, z), Blocks.BARRIER);
-                        }
-                    }
+        // Keep the spawn area loaded so joining players never wait for it
+        chunkManager.addTicket(ChunkTicketType.SPAWN, 0, 0, SPAWN_TICKET_LEVEL);
+    }
+
+    private static ChunkGenerator createGenerator(String name) {
+        if ("flat".equalsIgnoreCase(GENERATOR)) {
+            return new DefaultChunkGenerator();
+        }
+        return new NoiseChunkGenerator(Long.getLong("servzero.world.seed", name.hashCode()));
+    }
+
+    public Location getSpawnLocation() {
+        return Location.get(this, 0, chunkManager.getGenerator().getSpawnY(0, 0), 0, 0, 0);
+    }
+
+    public void save() {
+        chunkManager.saveAll();
+    }
+
+    public void close() {
+        chunkManager.close();
+    }
+
+    public void tick() {
+        new ArrayList<>(this.entityList).forEach(Entity::tick);
+        this.chunkManager.tick(Server.getInstance().getTickCount());
+        this.lightEngine.tick(System.nanoTime() + LIGHT_BUDGET_NANOS);
+    }
+
+    public void markChunkChanged(Chunk chunk) {
+        this.changedChunks.add(chunk);
+    }
+
+    /**
+     * Sends every block change made since the last call, one packet per chunk, to the players
+     * that have been sent the chunk. Players that get the chunk later receive it with the changes.
+     */
+    public void flushBlockChanges() {
+        if (this.changedChunks.isEmpty()) {
+            return;
+        }
+
+        final List<Player> players = getPlayerList();
+        final List<Player> recipients = new ArrayList<>();
+        for (Chunk chunk : this.changedChunks) {
+            final Packet<?> packet = chunk.createBlockChangePacket();
+            if (packet == null) {
+                continue;
+            }
+            recipients.clear();
+            for (Player player : players) {
+                if (player.getChunkView().isChunkSent(chunk.getX(), chunk.getZ())) {
+                    recipients.add(player);
                 }
             }
-        });
+            PacketBroadcaster.broadcast(packet, recipients);
+        }
+        this.changedChunks.clear();
     }
 
     public String getName() {
@@ -95,8 +132,24 @@ public class World {
         return entityList;
     }
 
+    public EntityGrid getEntityGrid() {
+        return entityGrid;
+    }
+
+    public EntityTracker getEntityTracker() {
+        return entityTracker;
+    }
+
+    public LightEngine getLightEngine() {
+        return lightEngine;
+    }
+
+    public ChunkManager getChunkManager() {
+        return chunkManager;
+    }
+
     public List<Chunk> getChunkList() {
-        return new ArrayList<>(chunkMap.values());
+        return chunkManager.getLoadedChunks();
     }
 
     public Chunk getSpawnChunk(Location location) {
@@ -109,22 +162,19 @@ public class World {
 
     public boolean isEntityAtPosition(Position position) {
         Location location = Location.fromPosition(this, position);
-        return entityList.stream().anyMatch(entity -> entity.getLocation().equals(location));
+        return !entityGrid.getEntitiesInRange(location, 2.0D, entity -> entity.getLocation().equals(location)).isEmpty();
     }
 
     public void sendToAllInWorld(Packet<?> packet) {
-        if (getPlayerList().size() > 0) {
-            getPlayerList().forEach(player -> player.getNetworkManager().sendPacket(packet));
-        }
+        PacketBroadcaster.broadcast(packet, getPlayerList());
     }
 
     public boolean isChunkLoaded(Position position) {
-        for (Chunk chunk : chunkMap.values()) {
-            if (chunk.isInChunk(position)) {
-                return true;
-            }
-        }
-        return false;
+        return chunkManager.getChunk(position.getX() >> 4, position.getZ() >> 4) != null;
+    }
+
+    public boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return chunkManager.getChunk(chunkX, chunkZ) != null;
     }
 
     public Block getBlockAt(Position position) {
@@ -133,59 +183,32 @@ public class World {
     }
 
     public Chunk getChunkAt(Position position) {
-        int chunkX = (int) Math.floor(position.getX() / 16.0D);
-        int chunkZ = (int) Math.floor(position.getZ() / 16.0D);
-        return chunkMap.getOrDefault(ChunkCoordinate.get(chunkX, chunkZ), null);
+        return chunkManager.getChunk(position.getX() >> 4, position.getZ() >> 4);
+    }
+
+    public Chunk getChunkAt(int chunkX, int chunkZ) {
+        return chunkManager.getChunk(chunkX, chunkZ);
+    }
+
+    /**
+     * Loads or generates the chunk without blocking; the future completes on the main thread.
+     */
+    public CompletableFuture<Chunk> getChunkAtAsync(int chunkX, int chunkZ) {
+        return chunkManager.getChunkAsync(chunkX, chunkZ);
     }
 
     public void leave(Player player) {
         this.entityList.remove(player);
-
-        Server.getInstance().getPlayerList().forEach(onlinePlayer -> {
-            onlinePlayer.getNetworkManager().sendPacket(new OutPacketDestroyEntities(player.getId()));
-        });
+        this.entityGrid.remove(player);
+        this.entityTracker.untrack(player);
+        player.getChunkView().clear();
     }
 
     public void spawn(Entity entity, Location location) {
         entity.setInitialLocation(location);
         entityList.add(entity);
-
-        if (entity instanceof Player) {
-            final Player newPlayer = (Player) entity;
-            Server.getInstance().getPlayerList().stream().filter(player -> player.getLocation().getWorld().equals(this) && !entity.equals(player)).forEach(onlinePlayer -> {
-                // Spawn new player to other player
-                onlinePlayer.getNetworkManager().sendPacket(new OutPacketSpawnPlayer(
-                        entity.getId(),
-                        newPlayer.getUniqueId(),
-                        location.getX(),
-                        location.getY(),
-                        location.getZ(),
-                        location.getYaw(),
-                        location.getPitch()
-                ));
-            });
-
-            Schedulers.runLaterAsync(() -> {
-                Server.getInstance().getPlayerList().stream().filter(player -> player.getLocation().getWorld().equals(this) && !entity.equals(player)).forEach(onlinePlayer -> {
-                    // Spawn other player to new player
-                    newPlayer.getNetworkManager().sendPacket(new OutPacketSpawnPlayer(
-                            onlinePlayer.getId(),
-                            onlinePlayer.getUniqueId(),
-                            onlinePlayer.getLocation().getX(),
-                            onlinePlayer.getLocation().getY(),
-                            onlinePlayer.getLocation().getZ(),
-                            onlinePlayer.getLocation().getYaw(),
-                            onlinePlayer.getLocation().getPitch()
-                    ));
-
-                    // Send other player's head rotation to new player
-                    newPlayer.getNetworkManager().sendPacket(new OutPacketEntityHeadLook(
-                            onlinePlayer.getId(),
-                            onlinePlayer.getLocation().getYaw()
-                    ));
-                });
-            }, 50L);
-        }
+        entityGrid.add(entity);
+        // The tracker spawns the entity for nearby players and nearby players for a new player
+        entityTracker.track(entity);
     }
-
 }
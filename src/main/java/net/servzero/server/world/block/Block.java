@@ -1,6 +1,5 @@
 package net.servzero.server.world.block;
 
-import net.servzero.network.packet.out.OutPacketBlockChange;
 import net.servzero.server.world.IUpdateable;
 import net.servzero.server.world.World;
 
@@ -27,13 +26,16 @@ public class Block implements IUpdateable {
         return state;
     }
 
-    public synchronized void setType(BlockState state) {
+    public void setType(BlockState state) {
         this.state = state;
-        update();
+        this.world.getChunkAt(this.position).setChunkBlock(this.position, state);
     }
 
+    /**
+     * Resends this block to the players that have its chunk at the end of the tick.
+     */
     @Override
     public void update() {
-        this.world.sendToAllInWorld(new OutPacketBlockChange(this));
+        this.world.getChunkAt(this.position).recordBlockChange(this.position);
     }
 }
@@ -4,5 +4,16 @@ public interface Blocks {
     BlockState AIR = new BlockState(0, 0);
 
     BlockState STONE = new BlockState(1, 0);
+    BlockState GRASS = new BlockState(2, 0);
+    BlockState DIRT = new BlockState(3, 0);
+    BlockState BEDROCK = new BlockState(7, 0);
+    BlockState WATER = new BlockState(9, 0);
+    BlockState SAND = new BlockState(12, 0);
+    BlockState GRAVEL = new BlockState(13, 0);
+    BlockState GOLD_ORE = new BlockState(14, 0);
+    BlockState IRON_ORE = new BlockState(15, 0);
+    BlockState COAL_ORE = new BlockState(16, 0);
+    BlockState DIAMOND_ORE = new BlockState(56, 0);
+    BlockState REDSTONE_ORE = new BlockState(73, 0);
     BlockState BARRIER = new BlockState(166, 0);
 }
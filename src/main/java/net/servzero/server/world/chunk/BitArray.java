@@ -0,0 +1,61 @@
+package net.servzero.server.world.chunk;
+
+/**
+ * Fixed size array of unsigned integers packed into longs, using the layout the 1.12 chunk
+ * format expects: entries are stored back to back and may span two longs.
+ */
+public class BitArray {
+    private final long[] data;
+    private final int bitsPerEntry;
+    private final long maxEntryValue;
+    private final int size;
+
+    public BitArray(int bitsPerEntry, int size) {
+        if (bitsPerEntry < 1 || bitsPerEntry > 32) {
+            throw new IllegalArgumentException("Invalid bits per entry: " + bitsPerEntry);
+        }
+        this.bitsPerEntry = bitsPerEntry;
+        this.maxEntryValue = (1L << bitsPerEntry) - 1L;
+        this.size = size;
+        this.data = new long[(size * bitsPerEntry + 63) / 64];
+    }
+
+    public int get(int index) {
+        final int bitIndex = index * this.bitsPerEntry;
+        final int startLong = bitIndex >> 6;
+        final int endLong = (bitIndex + this.bitsPerEntry - 1) >> 6;
+        final int startOffset = bitIndex & 63;
+
+        if (startLong == endLong) {
+            return (int) (this.data[startLong] >>> startOffset & this.maxEntryValue);
+        }
+        final int endOffset = 64 - startOffset;
+        return (int) ((this.data[startLong] >>> startOffset | this.data[endLong] << endOffset) & this.maxEntryValue);
+    }
+
+    public void set(int index, int value) {
+        final int bitIndex = index * this.bitsPerEntry;
+        final int startLong = bitIndex >> 6;
+        final int endLong = (bitIndex + this.bitsPerEntry - 1) >> 6;
+        final int startOffset = bitIndex & 63;
+
+        this.data[startLong] = this.data[startLong] & ~(this.maxEntryValue << startOffset) | ((long) value & this.maxEntryValue) << startOffset;
+        if (startLong != endLong) {
+            final int endOffset = 64 - startOffset;
+            final int overflowBits = this.bitsPerEntry - endOffset;
+            this.data[endLong] = this.data[endLong] >>> overflowBits << overflowBits | ((long) value & this.maxEntryValue) >> endOffset;
+        }
+    }
+
+    public long[] getData() {
+        return this.data;
+    }
+
+    public int getBitsPerEntry() {
+        return this.bitsPerEntry;
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
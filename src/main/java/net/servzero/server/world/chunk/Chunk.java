@@ -1,7 +1,12 @@
 package net.servzero.server.world.chunk;
 
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import net.servzero.helper.Validator;
+import net.servzero.network.packet.Packet;
+import net.servzero.network.packet.out.OutPacketBlockChange;
+import net.servzero.network.packet.out.OutPacketChunkData;
+import net.servzero.network.packet.out.OutPacketMultiBlockChange;
 import net.servzero.network.packet.serialization.ISerializable;
 import net.servzero.network.packet.serialization.PacketDataSerializer;
 import net.servzero.server.world.World;
@@ -9,21 +14,32 @@ import net.servzero.server.world.block.Block;
 import net.servzero.server.world.block.BlockState;
 import net.servzero.server.world.block.Position;
 
-import java.util.Arrays;
-
 public class Chunk implements ISerializable<PacketDataSerializer> {
+    private static final int BIOME_BYTES = 256;
+    // Beyond this many changed blocks in a tick the changed sections are resent as a whole
+    private static final int MAX_TRACKED_CHANGES = 64;
 
     private final World world;
     private final ChunkCoordinate coordinate;
+    private final long key;
     private final int minXInclusive;
     private final int minZInclusive;
     private final int maxXExclusive;
     private final int maxZExclusive;
     private final ChunkSection[] sections = new ChunkSection[16];
+    // Encoded chunk data packet body, shared by every recipient until a block changes
+    private ByteBuf cachedPacketData;
+    // Whether the chunk changed since it was last saved
+    private boolean dirty;
+    // Blocks changed since the last flush, packed as x << 12 | z << 8 | y
+    private final short[] changedBlocks = new short[MAX_TRACKED_CHANGES];
+    private int changedBlockCount;
+    private int changedSectionMask;
 
     public Chunk(World world, int x, int z) {
         this.world = world;
         this.coordinate = ChunkCoordinate.get(x, z);
+        this.key = ChunkCoordinate.toKey(x, z);
         this.minXInclusive = this.coordinate.getChunkX() * 16;
         this.minZInclusive = this.coordinate.getChunkZ() * 16;
         this.maxXExclusive = (this.coordinate.getChunkX() + 1) * 16;
@@ -37,6 +53,10 @@ public class Chunk implements ISerializable<PacketDataSerializer> {
         return this.coordinate;
     }
 
+    public long getKey() {
+        return this.key;
+    }
+
     public World getWorld() {
         return this.world;
     }
@@ -44,7 +64,7 @@ public class Chunk implements ISerializable<PacketDataSerializer> {
     public boolean isInChunk(Position position) {
         final int x = position.getX();
         final int z = position.getZ();
-        return x >= this.minXInclusive && x < this.maxXExclusive && z <= this.minZInclusive && z < this.maxZExclusive;
+        return x >= this.minXInclusive && x < this.maxXExclusive && z >= this.minZInclusive && z < this.maxZExclusive;
     }
 
     public int getX() {
@@ -66,42 +86,203 @@ public class Chunk implements ISerializable<PacketDataSerializer> {
         return section.getBlockAt(position);
     }
 
+    public BlockState getBlockState(Position position) {
+        Validator.validateCoordinate(position);
+        ChunkSection section = getSectionFromY(position.getY());
+        return section.getBlockState(position);
+    }
+
     public void setChunkBlock(Position position, BlockState state) {
+        setBlockState(position, state);
+        this.world.getLightEngine().queueUpdate(this.minXInclusive | (position.getX() & 15), position.getY(), this.minZInclusive | (position.getZ() & 15));
+        recordBlockChange(position);
+    }
+
+    /**
+     * Remembers that the block changed so it is sent to the players that have this chunk at the
+     * end of the tick, together with every other change to the chunk in the same tick.
+     */
+    public void recordBlockChange(Position position) {
+        final int y = position.getY();
+        if (this.changedBlockCount == 0 && this.changedSectionMask == 0) {
+            this.world.markChunkChanged(this);
+        }
+        this.changedSectionMask |= 1 << (y >> 4);
+        if (this.changedBlockCount == MAX_TRACKED_CHANGES) {
+            return;
+        }
+
+        final short packed = (short) ((position.getX() & 15) << 12 | (position.getZ() & 15) << 8 | y);
+        for (int i = 0; i < this.changedBlockCount; i++) {
+            if (this.changedBlocks[i] == packed) {
+                return;
+            }
+        }
+        this.changedBlocks[this.changedBlockCount++] = packed;
+    }
+
+    /**
+     * Builds the packet describing this tick's changes and forgets them: a Block Change for a
+     * single block, a Multi Block Change for a few, or the changed sections once there are too many
+     * to list. Returns null if nothing changed.
+     */
+    public Packet<?> createBlockChangePacket() {
+        final int count = this.changedBlockCount;
+        final int sectionMask = this.changedSectionMask;
+        this.changedBlockCount = 0;
+        this.changedSectionMask = 0;
+
+        if (count == 0) {
+            return null;
+        }
+        if (count == 1) {
+            return new OutPacketBlockChange(getBlockAt(getChangedPosition(this.changedBlocks[0])));
+        }
+        if (count < MAX_TRACKED_CHANGES) {
+            final short[] positions = new short[count];
+            final int[] globalIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                final int packed = this.changedBlocks[i];
+                final int y = packed & 0xFF;
+                positions[i] = this.changedBlocks[i];
+                globalIds[i] = this.sections[y >> 4].getGlobalId((y & 15) << 8 | (packed >> 8 & 15) << 4 | (packed >> 12 & 15));
+            }
+            return new OutPacketMultiBlockChange(getX(), getZ(), positions, globalIds);
+        }
+        return new OutPacketChunkData(this, sectionMask);
+    }
+
+    private Position getChangedPosition(int packed) {
+        return Position.get(this.minXInclusive | (packed >> 12 & 15), packed & 0xFF, this.minZInclusive | (packed >> 8 & 15));
+    }
+
+    /**
+     * Sets a block without notifying players, for chunks that have not been sent to anyone yet.
+     */
+    public void setBlockState(Position position, BlockState state) {
         Validator.validateCoordinate(position);
         ChunkSection section = getSectionFromY(position.getY());
         section.setBlock(position, state);
+        invalidatePacketData();
+        this.dirty = true;
+    }
+
+    /**
+     * Collapses every uniform section to a single value, see {@link ChunkSection#compact()}.
+     */
+    public void compactSections() {
+        for (ChunkSection section : this.sections) {
+            section.compact();
+        }
+    }
+
+    public ChunkSection getSection(int sectionY) {
+        return this.sections[sectionY];
+    }
+
+    public int getSectionCount() {
+        return this.sections.length;
+    }
+
+    public boolean isDirty() {
+        return this.dirty;
+    }
+
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    /**
+     * Rough number of heap and direct bytes held by this chunk's block storage and packet cache.
+     */
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (ChunkSection section : this.sections) {
+            bytes += section.getMemoryUsage();
+        }
+        if (this.cachedPacketData != null) {
+            bytes += this.cachedPacketData.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns a retained duplicate of the encoded chunk data packet body, serializing it first if
+     * the chunk changed since the last call. The caller owns the returned buffer and must release it.
+     */
+    public ByteBuf retainPacketData() {
+        if (this.cachedPacketData == null) {
+            final ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(getSerializedSize(getSectionBitmask(), true));
+            write(new PacketDataSerializer(buffer));
+            this.cachedPacketData = buffer;
+        }
+        return this.cachedPacketData.retainedDuplicate();
+    }
+
+    public void invalidatePacketData() {
+        if (this.cachedPacketData != null) {
+            this.cachedPacketData.release();
+            this.cachedPacketData = null;
+        }
+    }
+
+    private int getSectionBitmask() {
+        int bitmask = 0;
+        for (int i = 0; i < this.sections.length; i++) {
+            if (this.sections[i].hasBlocks()) {
+                bitmask |= 1 << i;
+            }
+        }
+        return bitmask;
+    }
+
+    private int getSectionDataSize(int sectionMask, boolean fullChunk) {
+        int size = 0;
+        for (int i = 0; i < this.sections.length; i++) {
+            if ((sectionMask & 1 << i) != 0) {
+                size += this.sections[i].getSerializedSize();
+            }
+        }
+        return fullChunk ? size + BIOME_BYTES : size;
+    }
+
+    private int getSerializedSize(int sectionMask, boolean fullChunk) {
+        final int dataSize = getSectionDataSize(sectionMask, fullChunk);
+        return Integer.BYTES * 2 + 1
+                + PacketDataSerializer.countBytes(sectionMask)
+                + PacketDataSerializer.countBytes(dataSize) + dataSize
+                + PacketDataSerializer.countBytes(0);
+    }
+
+    /**
+     * Encodes a chunk data packet body that only replaces the given sections on the client, empty
+     * ones included. The caller owns the returned buffer.
+     */
+    public ByteBuf encodeSections(int sectionMask) {
+        final ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(getSerializedSize(sectionMask, false));
+        write(new PacketDataSerializer(buffer), sectionMask, false);
+        return buffer;
     }
 
     @Override
     public void write(PacketDataSerializer serializer) {
+        write(serializer, getSectionBitmask(), true);
+    }
+
+    private void write(PacketDataSerializer serializer, int sectionMask, boolean fullChunk) {
         serializer.writeInt(this.coordinate.getChunkX()); //chunkX
         serializer.writeInt(this.coordinate.getChunkZ()); //chunkZ
-        serializer.writeBoolean(true); //groundupcontinous (new chunk drop all)
-        int bits = 0;
-        if (sections[0].hasBlocks()) bits += 1;
-        if (sections[1].hasBlocks()) bits += 2;
-        if (sections[2].hasBlocks()) bits += 4;
-        if (sections[3].hasBlocks()) bits += 8;
-        if (sections[4].hasBlocks()) bits += 16;
-        if (sections[5].hasBlocks()) bits += 32;
-        if (sections[6].hasBlocks()) bits += 64;
-        if (sections[7].hasBlocks()) bits += 128;
-        if (sections[8].hasBlocks()) bits += 256;
-        if (sections[9].hasBlocks()) bits += 512;
-        if (sections[10].hasBlocks()) bits += 1024;
-        if (sections[11].hasBlocks()) bits += 2048;
-        if (sections[12].hasBlocks()) bits += 4096;
-        if (sections[13].hasBlocks()) bits += 8192;
-        if (sections[14].hasBlocks()) bits += 16384;
-        if (sections[15].hasBlocks()) bits += 32768;
-        serializer.writeVarInt(bits); //bitmask
-        PacketDataSerializer buffer = new PacketDataSerializer(Unpooled.buffer());
-        Arrays.stream(this.sections).filter(ChunkSection::hasBlocks).forEach(section -> section.write(buffer));
-        serializer.writeVarInt(buffer.readableBytes() + 256); //length
-        Arrays.stream(this.sections).filter(ChunkSection::hasBlocks).forEach(section -> section.write(serializer)); //data
-        for (int i = 0; i < 256; i++) {
-            serializer.writeByte(0);
-        }
-        serializer.writeVarInt(0); //biome array length
+        serializer.writeBoolean(fullChunk); //groundupcontinous (new chunk drop all)
+        serializer.writeVarInt(sectionMask); //bitmask
+        serializer.writeVarInt(getSectionDataSize(sectionMask, fullChunk)); //length
+        for (int i = 0; i < this.sections.length; i++) {
+            if ((sectionMask & 1 << i) != 0) {
+                this.sections[i].write(serializer); //data
+            }
+        }
+        if (fullChunk) {
+            serializer.writeZero(BIOME_BYTES); //biomes
+        }
+        serializer.writeVarInt(0); //block entity array length
     }
 }
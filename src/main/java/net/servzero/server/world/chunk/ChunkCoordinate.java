@@ -1,7 +1,5 @@
 package net.servzero.server.world.chunk;
 
-import java.util.Objects;
-
 public class ChunkCoordinate {
     private final int chunkX;
     private final int chunkZ;
@@ -15,6 +13,22 @@ public class ChunkCoordinate {
         return new ChunkCoordinate(chunkX, chunkZ);
     }
 
+    public static long toKey(int chunkX, int chunkZ) {
+        return ((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL);
+    }
+
+    public static int getChunkX(long key) {
+        return (int) key;
+    }
+
+    public static int getChunkZ(long key) {
+        return (int) (key >> 32);
+    }
+
+    public long toKey() {
+        return toKey(this.chunkX, this.chunkZ);
+    }
+
     public int getChunkX() {
         return chunkX;
     }
@@ -33,6 +47,6 @@ public class ChunkCoordinate {
 
     @Override
     public int hashCode() {
-        return Objects.hash(chunkX, chunkZ);
+        return 31 * chunkX + chunkZ;
     }
 }
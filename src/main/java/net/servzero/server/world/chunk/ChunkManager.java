@@ -0,0 +1,309 @@
+package net.servzero.server.world.chunk;
+
+import net.servzero.logger.Logger;
+import net.servzero.server.Server;
+import net.servzero.server.world.World;
+import net.servzero.server.world.generator.ChunkGenerator;
+import net.servzero.server.world.light.LightEngine;
+import net.servzero.server.world.storage.AsyncChunkStorage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Owns the loaded chunks of a world. A chunk stays loaded while at least one {@link ChunkTicket}
+ * covers it; once the last ticket is gone it is unloaded after {@link #UNLOAD_DELAY_TICKS} and kept
+ * in a small LRU cache, so walking back and forth across a border does not reload it. Missing
+ * chunks are read from the world's region files or generated in the background and added once
+ * ready; modified ones are saved on unload.
+ * Only used from the main thread, except for the lock-free lookups through {@link #getChunk}.
+ */
+public class ChunkManager {
+    private static final long UNLOAD_DELAY_TICKS = Long.getLong("servzero.chunks.unload-delay", 30L * Server.TICKS_PER_SECOND);
+    private static final int GENERATOR_THREADS = Integer.getInteger("servzero.generator.threads", Runtime.getRuntime().availableProcessors());
+    private static final int UNLOADED_CACHE_SIZE = Integer.getInteger("servzero.chunks.unload-cache", 256);
+    private static final long LOAD_RETRY_DELAY_TICKS = Long.getLong("servzero.chunks.load-retry-delay", 5L * Server.TICKS_PER_SECOND);
+
+    private final World world;
+    private final ChunkGenerator generator;
+    private final AsyncChunkStorage storage;
+    // Generation is pure CPU work, so it gets its own pool instead of competing with decoding
+    private final ForkJoinPool generatorPool = new ForkJoinPool(GENERATOR_THREADS, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    private final ChunkMap chunkMap = new ChunkMap();
+    private final List<ChunkTicket> tickets = new ArrayList<>();
+    // Number of tickets covering each chunk
+    private final Map<Long, Integer> ticketCounts = new HashMap<>();
+    // Chunks without tickets and the tick at which they lost their last one
+    private final Map<Long, Long> unloadQueue = new HashMap<>();
+    private final Map<Long, CompletableFuture<Chunk>> loadingChunks = new HashMap<>();
+    // Chunks whose saved data could not be read and the tick of the failure; never generated over
+    private final Map<Long, Long> failedLoads = new HashMap<>();
+    // Tick of the last tick() call, so loads and ticket changes between ticks need no server
+    private long currentTick;
+    private final LinkedHashMap<Long, Chunk> unloadedCache = new LinkedHashMap<>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+            return size() > UNLOADED_CACHE_SIZE;
+        }
+    };
+
+    public ChunkManager(World world, ChunkGenerator generator, AsyncChunkStorage storage) {
+        this.world = world;
+        this.generator = generator;
+        this.storage = storage;
+    }
+
+    public Chunk getChunk(int chunkX, int chunkZ) {
+        return this.chunkMap.get(chunkX, chunkZ);
+    }
+
+    public boolean isLoaded(int chunkX, int chunkZ) {
+        return this.chunkMap.get(chunkX, chunkZ) != null;
+    }
+
+    public List<Chunk> getLoadedChunks() {
+        return this.chunkMap.values();
+    }
+
+    public ChunkTicket addTicket(ChunkTicketType type, int chunkX, int chunkZ, int level) {
+        return addTicket(new ChunkTicket(type, chunkX, chunkZ, level, -1));
+    }
+
+    public ChunkTicket addTimedTicket(int chunkX, int chunkZ, int level, long durationTicks) {
+        return addTicket(new ChunkTicket(ChunkTicketType.TIMED, chunkX, chunkZ, level, this.currentTick + durationTicks));
+    }
+
+    private ChunkTicket addTicket(ChunkTicket ticket) {
+        this.tickets.add(ticket);
+        final int level = ticket.getLevel();
+        for (int x = ticket.getChunkX() - level; x <= ticket.getChunkX() + level; x++) {
+            for (int z = ticket.getChunkZ() - level; z <= ticket.getChunkZ() + level; z++) {
+                final long key = ChunkCoordinate.toKey(x, z);
+                if (this.ticketCounts.merge(key, 1, Integer::sum) == 1) {
+                    this.unloadQueue.remove(key);
+                    this.getChunkAsync(x, z);
+                }
+            }
+        }
+        return ticket;
+    }
+
+    public void removeTicket(ChunkTicket ticket) {
+        if (ticket == null || !this.tickets.remove(ticket)) {
+            return;
+        }
+
+        final long tick = this.currentTick;
+        final int level = ticket.getLevel();
+        for (int x = ticket.getChunkX() - level; x <= ticket.getChunkX() + level; x++) {
+            for (int z = ticket.getChunkZ() - level; z <= ticket.getChunkZ() + level; z++) {
+                final long key = ChunkCoordinate.toKey(x, z);
+                if (this.ticketCounts.merge(key, -1, Integer::sum) == 0) {
+                    this.ticketCounts.remove(key);
+                    this.unloadQueue.put(key, tick);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the chunk, loading or generating it in the background if needed. The future always
+     * completes on the main thread, with the chunk already added to the world. Concurrent requests
+     * for the same chunk share one future. Only chunks that were never saved are generated: if the
+     * saved data cannot be read, the future fails and the load is retried while the chunk is still
+     * wanted, so the data on disk is never replaced by a fresh chunk.
+     */
+    public CompletableFuture<Chunk> getChunkAsync(int chunkX, int chunkZ) {
+        final long key = ChunkCoordinate.toKey(chunkX, chunkZ);
+        final Chunk loaded = this.chunkMap.get(key);
+        if (loaded != null) {
+            return CompletableFuture.completedFuture(loaded);
+        }
+
+        final CompletableFuture<Chunk> inFlight = this.loadingChunks.get(key);
+        if (inFlight != null) {
+            return inFlight;
+        }
+
+        final Chunk cached = this.unloadedCache.remove(key);
+        if (cached != null) {
+            this.install(key, cached);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        final CompletableFuture<Chunk> future = this.storage.load(this.world, chunkX, chunkZ)
+                .thenApplyAsync(chunk -> chunk != null ? chunk : this.generate(chunkX, chunkZ), this.generatorPool)
+                .handleAsync((chunk, throwable) -> {
+                    this.loadingChunks.remove(key);
+                    if (throwable != null) {
+                        Logger.error("Could not load chunk " + chunkX + "," + chunkZ + ", retrying later: " + throwable);
+                        this.failedLoads.put(key, this.currentTick);
+                        throw throwable instanceof CompletionException ? (CompletionException) throwable : new CompletionException(throwable);
+                    }
+                    // getChunkNow may have loaded it in the meantime
+                    final Chunk existing = this.chunkMap.get(key);
+                    if (existing != null) {
+                        return existing;
+                    }
+                    this.install(key, chunk);
+                    return chunk;
+                }, Server.getInstance()::execute);
+        this.loadingChunks.put(key, future);
+        return future;
+    }
+
+    /**
+     * Loads or generates the chunk on the calling thread and adds it to the world. Blocks on disk
+     * I/O and generation, so it is meant for tools and startup; the tick uses {@link #getChunkAsync}.
+     * Throws a {@link CompletionException} if the saved chunk cannot be read.
+     */
+    public Chunk getChunkNow(int chunkX, int chunkZ) {
+        final long key = ChunkCoordinate.toKey(chunkX, chunkZ);
+        Chunk chunk = this.chunkMap.get(key);
+        if (chunk != null) {
+            return chunk;
+        }
+
+        chunk = this.unloadedCache.remove(key);
+        if (chunk == null) {
+            chunk = this.storage.load(this.world, chunkX, chunkZ).join();
+        }
+        if (chunk == null) {
+            chunk = this.generate(chunkX, chunkZ);
+        }
+        this.install(key, chunk);
+        return chunk;
+    }
+
+    private Chunk generate(int chunkX, int chunkZ) {
+        final Chunk chunk = new Chunk(this.world, chunkX, chunkZ);
+        this.generator.generate(chunk);
+        chunk.compactSections();
+        LightEngine.initialize(chunk);
+        // Generation is deterministic, so an untouched chunk is cheaper to generate again than to save
+        chunk.setDirty(false);
+        return chunk;
+    }
+
+    private void install(long key, Chunk chunk) {
+        this.chunkMap.put(chunk);
+        // Nobody wants the chunk anymore (the ticket went away while it was loading)
+        if (!this.ticketCounts.containsKey(key)) {
+            this.unloadQueue.put(key, this.currentTick);
+        }
+    }
+
+    /**
+     * Queues every modified loaded chunk for saving and flushes the region files.
+     */
+    public void saveAll() {
+        for (Chunk chunk : this.chunkMap.values()) {
+            if (chunk.isDirty()) {
+                this.storage.save(chunk);
+            }
+        }
+        this.storage.flush();
+    }
+
+    public ChunkGenerator getGenerator() {
+        return this.generator;
+    }
+
+    public void close() {
+        this.generatorPool.shutdown();
+        this.saveAll();
+        this.storage.close();
+    }
+
+    /**
+     * Drops expired timed tickets, retries failed loads of chunks that are still wanted and unloads
+     * chunks that have been without a ticket for longer than the grace period.
+     */
+    public void tick(long tick) {
+        this.currentTick = tick;
+        for (int i = this.tickets.size() - 1; i >= 0; i--) {
+            final ChunkTicket ticket = this.tickets.get(i);
+            if (ticket.isExpired(tick)) {
+                this.removeTicket(ticket);
+            }
+        }
+
+        final Iterator<Map.Entry<Long, Long>> retries = this.failedLoads.entrySet().iterator();
+        while (retries.hasNext()) {
+            final Map.Entry<Long, Long> entry = retries.next();
+            if (tick - entry.getValue() < LOAD_RETRY_DELAY_TICKS) {
+                continue;
+            }
+            retries.remove();
+
+            final long key = entry.getKey();
+            if (this.ticketCounts.containsKey(key)) {
+                this.getChunkAsync(ChunkCoordinate.getChunkX(key), ChunkCoordinate.getChunkZ(key));
+            }
+        }
+
+        final Iterator<Map.Entry<Long, Long>> iterator = this.unloadQueue.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, Long> entry = iterator.next();
+            if (tick - entry.getValue() < UNLOAD_DELAY_TICKS) {
+                continue;
+            }
+            iterator.remove();
+
+            final Chunk chunk = this.chunkMap.remove(entry.getKey());
+            if (chunk != null) {
+                // The encoded packet lives in pooled direct memory; rebuild it if the chunk comes back
+                chunk.invalidatePacketData();
+                if (chunk.isDirty()) {
+                    this.storage.save(chunk);
+                }
+                this.unloadedCache.put(entry.getKey(), chunk);
+            }
+        }
+    }
+
+    public int getLoadedChunkCount() {
+        return this.chunkMap.size();
+    }
+
+    public int getCachedChunkCount() {
+        return this.unloadedCache.size();
+    }
+
+    public int getTicketCount() {
+        return this.tickets.size();
+    }
+
+    public int getLoadingChunkCount() {
+        return this.loadingChunks.size();
+    }
+
+    public int getPendingSaveCount() {
+        return this.storage.getPendingSaveCount();
+    }
+
+    public int getPendingUnloadCount() {
+        return this.unloadQueue.size();
+    }
+
+    /**
+     * Rough number of bytes held by loaded and cached chunks, see {@link Chunk#getMemoryUsage()}.
+     */
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (Chunk chunk : this.chunkMap.values()) {
+            bytes += chunk.getMemoryUsage();
+        }
+        for (Chunk chunk : this.unloadedCache.values()) {
+            bytes += chunk.getMemoryUsage();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,175 @@
+package net.servzero.server.world.chunk;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Open addressing hash map from packed chunk coordinates ({@link ChunkCoordinate#toKey(int, int)})
+ * to chunks. Each slot holds a single reference and the key is read from the chunk itself, so
+ * lookups never lock and never allocate. Writes are serialized; readers may run on any thread and
+ * see either the state before or after a concurrent write.
+ * <p>
+ * The last chunk found and its slot are remembered for repeated lookups, in plain fields that any
+ * reader may overwrite. A remembered chunk is only returned while the current table still holds it
+ * in that slot, so a stale or torn hint just falls back to probing and writers never touch it.
+ */
+public class ChunkMap {
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final Object TOMBSTONE = new Object();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile Object[] table = new Object[INITIAL_CAPACITY];
+    private Chunk lastHit;
+    private int lastHitIndex;
+    private int size;
+    private int tombstones;
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    public Chunk get(int chunkX, int chunkZ) {
+        return get(ChunkCoordinate.toKey(chunkX, chunkZ));
+    }
+
+    public Chunk get(long key) {
+        final Object[] table = this.table;
+        final Chunk last = this.lastHit;
+        final int lastIndex = this.lastHitIndex;
+        // The acquiring slot read also makes the chunk's fields visible before its key is read
+        if (last != null && lastIndex < table.length && SLOTS.getAcquire(table, lastIndex) == last && last.getKey() == key) {
+            return last;
+        }
+
+        return this.probe(table, key, true);
+    }
+
+    /**
+     * The plain lookup without the last-hit hint, for comparing the two.
+     */
+    Chunk getWithoutHint(long key) {
+        return this.probe(this.table, key, false);
+    }
+
+    private Chunk probe(Object[] table, long key, boolean remember) {
+        final int mask = table.length - 1;
+        for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+            final Object slot = SLOTS.getAcquire(table, index);
+            if (slot == null) {
+                return null;
+            }
+            if (slot != TOMBSTONE && ((Chunk) slot).getKey() == key) {
+                if (remember) {
+                    this.lastHit = (Chunk) slot;
+                    this.lastHitIndex = index;
+                }
+                return (Chunk) slot;
+            }
+        }
+    }
+
+    public boolean contains(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Adds the chunk, replacing any chunk at the same coordinate. Returns the replaced chunk.
+     */
+    public synchronized Chunk put(Chunk chunk) {
+        if ((this.size + this.tombstones + 1) * 4 > this.table.length * 3) {
+            rehash(this.size + 1 > this.table.length / 2 ? this.table.length * 2 : this.table.length);
+        }
+
+        final long key = chunk.getKey();
+        final Object[] table = this.table;
+        final int mask = table.length - 1;
+        int firstTombstone = -1;
+        for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+            final Object slot = table[index];
+            if (slot == null) {
+                if (firstTombstone >= 0) {
+                    index = firstTombstone;
+                    this.tombstones--;
+                }
+                SLOTS.setRelease(table, index, chunk);
+                this.size++;
+                return null;
+            }
+            if (slot == TOMBSTONE) {
+                if (firstTombstone < 0) {
+                    firstTombstone = index;
+                }
+            } else if (((Chunk) slot).getKey() == key) {
+                SLOTS.setRelease(table, index, chunk);
+                return (Chunk) slot;
+            }
+        }
+    }
+
+    public synchronized Chunk remove(long key) {
+        final Object[] table = this.table;
+        final int mask = table.length - 1;
+        for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+            final Object slot = table[index];
+            if (slot == null) {
+                return null;
+            }
+            if (slot != TOMBSTONE && ((Chunk) slot).getKey() == key) {
+                SLOTS.setRelease(table, index, TOMBSTONE);
+                this.size--;
+                this.tombstones++;
+                return (Chunk) slot;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        this.table = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+        this.tombstones = 0;
+    }
+
+    private void rehash(int capacity) {
+        final Object[] oldTable = this.table;
+        final Object[] newTable = new Object[capacity];
+        final int mask = capacity - 1;
+        for (Object slot : oldTable) {
+            if (slot != null && slot != TOMBSTONE) {
+                int index = hash(((Chunk) slot).getKey()) & mask;
+                while (newTable[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                newTable[index] = slot;
+            }
+        }
+        this.tombstones = 0;
+        // Published through the volatile write, readers holding the old table still see a consistent copy
+        this.table = newTable;
+    }
+
+    public void forEach(Consumer<Chunk> consumer) {
+        for (Object slot : this.table) {
+            if (slot != null && slot != TOMBSTONE) {
+                consumer.accept((Chunk) slot);
+            }
+        }
+    }
+
+    public List<Chunk> values() {
+        final List<Chunk> values = new ArrayList<>(this.size);
+        forEach(values::add);
+        return values;
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
@@ -7,15 +7,26 @@ import net.servzero.server.world.block.BlockState;
 import net.servzero.server.world.block.Blocks;
 import net.servzero.server.world.block.Position;
 
-import java.util.Arrays;
-
 public class ChunkSection implements ISerializable<PacketDataSerializer> {
-    private static final int BITS_PER_BLOCK = 13;
+    private static final int BLOCK_COUNT = 16 * 16 * 16;
+    private static final int MIN_BITS_PER_BLOCK = 4;
+    private static final int MAX_PALETTE_BITS_PER_BLOCK = 8;
+    private static final int GLOBAL_BITS_PER_BLOCK = 13;
+    private static final int AIR_ID = Blocks.AIR.toGlobalId();
 
     private final Chunk parent;
     private int y;
-    private final Block[][][] blocks = new Block[16][16][16];
-    private final Block[][][] emptyComparisonBlocks = new Block[16][16][16];
+
+    // Global ids of the palette entries; null once the section switched to global ids
+    private int[] palette;
+    private int paletteSize;
+    // Null while every block of the section has the same state (singleValue)
+    private BitArray storage;
+    private int singleValue = AIR_ID;
+    private int nonAirBlockCount = 0;
+    private final NibbleArray blockLight = new NibbleArray();
+    // Fully lit until the light engine says otherwise, which is what clients assume for missing sections
+    private final NibbleArray skyLight = new NibbleArray(15);
 
     public ChunkSection(Chunk parent, int sectionY) {
         this.parent = parent;
@@ -34,108 +45,208 @@ public class ChunkSection implements ISerializable<PacketDataSerializer> {
         this.y = y;
     }
 
-    private synchronized Block getBlockAtSectionCoordinate(int x, int y, int z) {
-        Block block = blocks[x][y][z];
-        if (block == null) {
-            int chunkX = this.parent.getX();
-            int chunkZ = this.parent.getZ();
-            int chunkStartX = chunkX * 16;
-            int chunkStartZ = chunkZ * 16;
-            blocks[x][y][z] = block = new Block(parent.getWorld(), Position.get(chunkStartX + x, y, chunkStartZ + z), Blocks.AIR);
-        }
-        return block;
-    }
-
-    private synchronized void setBlockAtSectionCoordinate(int x, int y, int z, BlockState state) {
-        Block block = blocks[x][y][z];
-        if (block == null) {
-            int chunkX = this.parent.getX();
-            int chunkZ = this.parent.getZ();
-            int chunkStartX = chunkX * 16;
-            int chunkStartZ = chunkZ * 16;
-            blocks[x][y][z] = block = new Block(parent.getWorld(), Position.get(chunkStartX + x, y, chunkStartZ + z), state);
-            block.update();
-        } else {
-            block.setType(state);
-        }
+    public NibbleArray getBlockLight() {
+        return blockLight;
     }
 
-    public void setBlock(Position coord, BlockState blockState) {
-        setBlockAtSectionCoordinate(coord.getX(), coord.getY(), coord.getZ(), blockState);
+    public NibbleArray getSkyLight() {
+        return skyLight;
     }
 
-    public Block getBlockAt(Position position) {
-        int originalX = position.getX();
-        int originalY = position.getY();
-        int originalZ = position.getZ();
+    /**
+     * Rough number of bytes held by the palette and the packed block storage.
+     */
+    public long getMemoryUsage() {
+        long bytes = NibbleArray.BYTES * 2;
+        if (this.palette != null) {
+            bytes += (long) this.palette.length * Integer.BYTES;
+        }
+        if (this.storage != null) {
+            bytes += (long) this.storage.getData().length * Long.BYTES;
+        }
+        return bytes;
+    }
 
-        int sectionX = checkNegative(originalX % 16);
-        int sectionY = checkNegative(originalY % 16);
-        int sectionZ = checkNegative(originalZ % 16);
+    private static int getIndex(int x, int y, int z) {
+        return ((y << 4) | z) << 4 | x;
+    }
 
-        return getBlockAtSectionCoordinate(sectionX, sectionY, sectionZ);
+    private int getGlobalId(int x, int y, int z) {
+        if (this.storage == null) {
+            return this.singleValue;
+        }
+        final int value = this.storage.get(getIndex(x, y, z));
+        return this.palette == null ? value : this.palette[value];
     }
 
-    private int checkNegative(int coord) {
-        if (coord < 0) {
-            return 16 + coord;
+    private void setGlobalId(int x, int y, int z, int globalId) {
+        if (this.storage == null) {
+            if (globalId == this.singleValue) {
+                return;
+            }
+            this.palette = new int[1 << MIN_BITS_PER_BLOCK];
+            this.palette[0] = this.singleValue;
+            this.paletteSize = 1;
+            this.storage = new BitArray(MIN_BITS_PER_BLOCK, BLOCK_COUNT);
+        }
+
+        final int index = getIndex(x, y, z);
+        final int previous = this.palette == null ? this.storage.get(index) : this.palette[this.storage.get(index)];
+        if (previous == globalId) {
+            return;
         }
-        return coord;
+        if (previous == AIR_ID) {
+            this.nonAirBlockCount++;
+        } else if (globalId == AIR_ID) {
+            this.nonAirBlockCount--;
+        }
+
+        // The palette lookup may resize, so resolve the value before touching the storage
+        final int value = this.palette == null ? globalId : getOrCreatePaletteIndex(globalId);
+        this.storage.set(index, value);
     }
 
-    @Override
-    public void write(PacketDataSerializer serializer) {
-        serializer.writeByte(BITS_PER_BLOCK);
-        serializer.writeVarInt(0);
+    private int getOrCreatePaletteIndex(int globalId) {
+        for (int i = 0; i < this.paletteSize; i++) {
+            if (this.palette[i] == globalId) {
+                return i;
+            }
+        }
 
-        long[] data = new long[16 * 16 * 16 * BITS_PER_BLOCK / 64];
+        if (this.paletteSize == this.palette.length) {
+            resize(this.storage.getBitsPerEntry() + 1);
+            if (this.palette == null) {
+                return globalId;
+            }
+        }
+        this.palette[this.paletteSize] = globalId;
+        return this.paletteSize++;
+    }
 
-        for (int y = 0; y < 16; y++) {
-            for (int z = 0; z < 16; z++) {
-                for (int x = 0; x < 16; x++) {
-                    int blockNumber = (((y * 16) + z) * 16) + x;
-                    int startLong = (blockNumber * BITS_PER_BLOCK) / 64;
-                    int startOffset = (blockNumber * BITS_PER_BLOCK) % 64;
-                    int endLong = ((blockNumber + 1) * BITS_PER_BLOCK - 1) / 64;
+    private void resize(int bitsPerBlock) {
+        final int[] oldPalette = this.palette;
+        final BitArray oldStorage = this.storage;
 
-                    Block block = getBlockAtSectionCoordinate(x, y, z);
-                    int value = (block == null ? Blocks.AIR : block.getState()).toGlobalId();
+        if (bitsPerBlock > MAX_PALETTE_BITS_PER_BLOCK) {
+            this.palette = null;
+            this.storage = new BitArray(GLOBAL_BITS_PER_BLOCK, BLOCK_COUNT);
+        } else {
+            this.palette = new int[1 << bitsPerBlock];
+            System.arraycopy(oldPalette, 0, this.palette, 0, this.paletteSize);
+            this.storage = new BitArray(bitsPerBlock, BLOCK_COUNT);
+        }
 
-                    data[startLong] |= ((long) value << startOffset);
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            final int value = oldStorage.get(i);
+            this.storage.set(i, this.palette == null ? oldPalette[value] : value);
+        }
+    }
 
-                    if (startLong != endLong) {
-                        data[endLong] = (value >> (64 - startOffset));
-                    }
+    /**
+     * Drops the palette and packed storage if every block of the section has the same state, so
+     * uniform sections like solid stone cost nothing and are sent as a single value. Meant for
+     * freshly generated or loaded chunks; the next differing block expands the section again.
+     */
+    public void compact() {
+        if (this.storage == null) {
+            return;
+        }
+        final int first = this.storage.get(0);
+        // A single palette entry means every index points at it
+        if (this.palette == null || this.paletteSize > 1) {
+            for (int i = 1; i < BLOCK_COUNT; i++) {
+                if (this.storage.get(i) != first) {
+                    return;
                 }
             }
         }
+        this.singleValue = this.palette == null ? first : this.palette[first];
+        this.palette = null;
+        this.paletteSize = 0;
+        this.storage = null;
+    }
+
+    /**
+     * Global id of the block at {@code index} in YZX order, as stored in Anvil's Blocks/Data arrays.
+     */
+    public int getGlobalId(int index) {
+        return getGlobalId(index & 15, index >> 8, (index >> 4) & 15);
+    }
+
+    public void setGlobalId(int index, int globalId) {
+        setGlobalId(index & 15, index >> 8, (index >> 4) & 15, globalId);
+    }
+
+    public void setBlock(Position coord, BlockState blockState) {
+        setGlobalId(coord.getX() & 15, coord.getY() & 15, coord.getZ() & 15, blockState.toGlobalId());
+    }
 
-        serializer.writeLongArray(data);
+    public BlockState getBlockState(Position position) {
+        return BlockState.fromGlobalId(getGlobalId(position.getX() & 15, position.getY() & 15, position.getZ() & 15));
+    }
 
-        // TODO: Add real block light
+    public Block getBlockAt(Position position) {
+        final Position worldPosition = Position.get(
+                (this.parent.getX() << 4) | (position.getX() & 15),
+                (this.y << 4) | (position.getY() & 15),
+                (this.parent.getZ() << 4) | (position.getZ() & 15)
+        );
+        return new Block(this.parent.getWorld(), worldPosition, getBlockState(position));
+    }
 
-        for (int x = 0; x < 16; x += 2) {
-            for (int y = 0; y < 16; y++) {
-                for (int z = 0; z < 16; z++) {
-                    int light = 15;
-                    serializer.writeByte(light | (light << 4));
+    @Override
+    public void write(PacketDataSerializer serializer) {
+        if (this.storage == null) {
+            // Uniform section: a single entry palette with every index pointing at it
+            serializer.writeByte(MIN_BITS_PER_BLOCK);
+            serializer.writeVarInt(1);
+            serializer.writeVarInt(this.singleValue);
+            final int longs = BLOCK_COUNT * MIN_BITS_PER_BLOCK / 64;
+            serializer.writeVarInt(longs);
+            serializer.writeZero(longs * Long.BYTES);
+        } else {
+            serializer.writeByte(this.storage.getBitsPerEntry());
+            if (this.palette == null) {
+                serializer.writeVarInt(0);
+            } else {
+                serializer.writeVarInt(this.paletteSize);
+                for (int i = 0; i < this.paletteSize; i++) {
+                    serializer.writeVarInt(this.palette[i]);
                 }
             }
+            serializer.writeLongArray(this.storage.getData());
         }
 
-        // TODO: Add real sky light
+        serializer.writeBytes(this.blockLight.getData());
+        serializer.writeBytes(this.skyLight.getData());
+    }
 
-        for (int x = 0; x < 16; x += 2) {
-            for (int y = 0; y < 16; y++) {
-                for (int z = 0; z < 16; z++) {
-                    int light = 15;
-                    serializer.writeByte(light | (light << 4));
-                }
+    /**
+     * Number of bytes {@link #write(PacketDataSerializer)} will produce, so the chunk can prefix
+     * its data length without serializing twice.
+     */
+    public int getSerializedSize() {
+        final int lightBytes = NibbleArray.BYTES * 2;
+        if (this.storage == null) {
+            final int longs = BLOCK_COUNT * MIN_BITS_PER_BLOCK / 64;
+            return 1 + 1 + PacketDataSerializer.countBytes(this.singleValue)
+                    + PacketDataSerializer.countBytes(longs) + longs * Long.BYTES + lightBytes;
+        }
+
+        int paletteBytes;
+        if (this.palette == null) {
+            paletteBytes = 1;
+        } else {
+            paletteBytes = PacketDataSerializer.countBytes(this.paletteSize);
+            for (int i = 0; i < this.paletteSize; i++) {
+                paletteBytes += PacketDataSerializer.countBytes(this.palette[i]);
             }
         }
+        final long[] data = this.storage.getData();
+        return 1 + paletteBytes + PacketDataSerializer.countBytes(data.length) + data.length * Long.BYTES + lightBytes;
     }
 
     public boolean hasBlocks() {
-        return !Arrays.deepEquals(this.blocks, this.emptyComparisonBlocks);
+        return this.nonAirBlockCount > 0;
     }
 }
@@ -0,0 +1,61 @@
+package net.servzero.server.world.chunk;
+
+/**
+ * Keeps every chunk within {@code level} chunks (square radius) of its center loaded until it is
+ * removed or, for timed tickets, until it expires.
+ */
+public class ChunkTicket {
+    private final ChunkTicketType type;
+    private final int chunkX;
+    private final int chunkZ;
+    private final int level;
+    // Tick at which the ticket is removed, or -1 if it never expires
+    private final long expiryTick;
+
+    ChunkTicket(ChunkTicketType type, int chunkX, int chunkZ, int level, long expiryTick) {
+        this.type = type;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.level = level;
+        this.expiryTick = expiryTick;
+    }
+
+    public ChunkTicketType getType() {
+        return type;
+    }
+
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getExpiryTick() {
+        return expiryTick;
+    }
+
+    public boolean isExpired(long tick) {
+        return this.expiryTick >= 0 && tick >= this.expiryTick;
+    }
+
+    public boolean covers(int chunkX, int chunkZ) {
+        return Math.abs(chunkX - this.chunkX) <= this.level && Math.abs(chunkZ - this.chunkZ) <= this.level;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkTicket{" +
+                "type=" + type +
+                ", chunkX=" + chunkX +
+                ", chunkZ=" + chunkZ +
+                ", level=" + level +
+                ", expiryTick=" + expiryTick +
+                '}';
+    }
+}
@@ -0,0 +1,10 @@
+package net.servzero.server.world.chunk;
+
+public enum ChunkTicketType {
+    // Keeps a player's view loaded, moved whenever the player crosses a chunk border
+    PLAYER,
+    // Keeps the area around the world spawn loaded for as long as the world exists
+    SPAWN,
+    // Holds chunks for a fixed number of ticks, e.g. for plugins or pending block updates
+    TIMED
+}
@@ -0,0 +1,50 @@
+package net.servzero.server.world.chunk;
+
+import java.util.Arrays;
+
+/**
+ * 4096 values of 4 bits each, two per byte with the even index in the low nibble. This is the
+ * layout of light and block data in both the chunk data packet and Anvil files, so the backing
+ * array is written out as is.
+ */
+public class NibbleArray {
+    public static final int BYTES = 2048;
+
+    private final byte[] data;
+
+    public NibbleArray() {
+        this.data = new byte[BYTES];
+    }
+
+    public NibbleArray(int initialValue) {
+        this();
+        if (initialValue != 0) {
+            Arrays.fill(this.data, (byte) ((initialValue & 15) | ((initialValue & 15) << 4)));
+        }
+    }
+
+    public NibbleArray(byte[] data) {
+        if (data.length != BYTES) {
+            throw new IllegalArgumentException("Nibble array needs " + BYTES + " bytes, got " + data.length);
+        }
+        this.data = data;
+    }
+
+    public int get(int index) {
+        final int value = this.data[index >> 1];
+        return (index & 1) == 0 ? value & 15 : (value >> 4) & 15;
+    }
+
+    public void set(int index, int value) {
+        final int i = index >> 1;
+        if ((index & 1) == 0) {
+            this.data[i] = (byte) ((this.data[i] & 0xF0) | (value & 15));
+        } else {
+            this.data[i] = (byte) ((this.data[i] & 0x0F) | ((value & 15) << 4));
+        }
+    }
+
+    public byte[] getData() {
+        return this.data;
+    }
+}
@@ -0,0 +1,18 @@
+package net.servzero.server.world.generator;
+
+import net.servzero.server.world.chunk.Chunk;
+
+public interface ChunkGenerator {
+    /**
+     * Fills a freshly created, empty chunk. Must not notify players; the chunk has not been sent yet.
+     * Called concurrently from several threads for different chunks.
+     */
+    void generate(Chunk chunk);
+
+    /**
+     * Y coordinate players spawn at above the given column.
+     */
+    default int getSpawnY(int blockX, int blockZ) {
+        return 1;
+    }
+}
@@ -0,0 +1,30 @@
+package net.servzero.server.world.generator;
+
+import net.servzero.server.world.block.Blocks;
+import net.servzero.server.world.block.Position;
+import net.servzero.server.world.chunk.Chunk;
+
+/**
+ * A stone platform on the four chunks around the origin, fenced in by barriers everywhere else.
+ */
+public class DefaultChunkGenerator implements ChunkGenerator {
+    @Override
+    public void generate(Chunk chunk) {
+        if (chunk.getX() < 1 && chunk.getX() >= -1 && chunk.getZ() < 1 && chunk.getZ() >= -1) {
+            final int y = 0;
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    chunk.setBlockState(Position.get(x, y, z), Blocks.STONE);
+                }
+            }
+        } else {
+            for (int y = 0; y < 4; y++) {
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        chunk.setBlockState(Position.get(x, y, z), Blocks.BARRIER);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package net.servzero.server.world.generator;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import net.servzero.server.world.block.BlockState;
+import net.servzero.server.world.block.Blocks;
+import net.servzero.server.world.chunk.Chunk;
+import net.servzero.server.world.chunk.ChunkCoordinate;
+
+import java.util.Random;
+
+/**
+ * Seeded terrain: rolling hills from two octave noise layers, oceans below sea level, spaghetti
+ * caves carved by a pair of 3D noise fields and ore veins placed from a per-chunk random. The
+ * output only depends on the seed and the chunk coordinates, so chunks can be generated in any
+ * order and on any number of threads.
+ * <p>
+ * The height noise is sampled on a 4 block grid and interpolated in between. Each chunk column's
+ * samples are cached, as a chunk also needs the first row and column of its east and south
+ * neighbours to interpolate its border.
+ */
+public class NoiseChunkGenerator implements ChunkGenerator {
+    public static final int SEA_LEVEL = 62;
+
+    private static final int SAMPLE_SPACING = 4;
+    private static final int SAMPLES_PER_CHUNK = 16 / SAMPLE_SPACING;
+    private static final int COLUMN_CACHE_SIZE = Integer.getInteger("servzero.generator.column-cache", 4096);
+    private static final double CAVE_THRESHOLD = 0.0035D;
+    private static final int MIN_CAVE_Y = 6;
+
+    private static final int STONE = Blocks.STONE.toGlobalId();
+    private static final int GRASS = Blocks.GRASS.toGlobalId();
+    private static final int DIRT = Blocks.DIRT.toGlobalId();
+    private static final int SAND = Blocks.SAND.toGlobalId();
+    private static final int GRAVEL = Blocks.GRAVEL.toGlobalId();
+    private static final int WATER = Blocks.WATER.toGlobalId();
+    private static final int BEDROCK = Blocks.BEDROCK.toGlobalId();
+
+    private final long seed;
+    private final OctaveNoise continentNoise;
+    private final OctaveNoise hillNoise;
+    private final PerlinNoise firstCaveNoise;
+    private final PerlinNoise secondCaveNoise;
+    private final LoadingCache<Long, double[]> columnSamples;
+
+    public NoiseChunkGenerator(long seed) {
+        this.seed = seed;
+        final Random random = new Random(seed);
+        this.continentNoise = new OctaveNoise(random, 4);
+        this.hillNoise = new OctaveNoise(random, 3);
+        this.firstCaveNoise = new PerlinNoise(random);
+        this.secondCaveNoise = new PerlinNoise(random);
+        this.columnSamples = CacheBuilder.newBuilder()
+                .maximumSize(COLUMN_CACHE_SIZE)
+                .build(CacheLoader.from(this::computeColumnSamples));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    private double sampleHeight(int blockX, int blockZ) {
+        final double continent = this.continentNoise.noise(blockX / 256.0D, blockZ / 256.0D);
+        final double hills = this.hillNoise.noise(blockX / 64.0D, blockZ / 64.0D);
+        return SEA_LEVEL + 4.0D + continent * 28.0D + hills * 8.0D;
+    }
+
+    // Heights on the sample grid for one chunk column, SAMPLES_PER_CHUNK squared, x fastest
+    private double[] computeColumnSamples(Long key) {
+        final int blockX = ChunkCoordinate.getChunkX(key) << 4;
+        final int blockZ = ChunkCoordinate.getChunkZ(key) << 4;
+        final double[] samples = new double[SAMPLES_PER_CHUNK * SAMPLES_PER_CHUNK];
+        for (int z = 0; z < SAMPLES_PER_CHUNK; z++) {
+            for (int x = 0; x < SAMPLES_PER_CHUNK; x++) {
+                samples[z * SAMPLES_PER_CHUNK + x] = sampleHeight(blockX + x * SAMPLE_SPACING, blockZ + z * SAMPLE_SPACING);
+            }
+        }
+        return samples;
+    }
+
+    private double getSample(int chunkX, int chunkZ, int sampleX, int sampleZ) {
+        // The grid point right after the chunk's last one belongs to the neighbouring column
+        if (sampleX == SAMPLES_PER_CHUNK) {
+            chunkX++;
+            sampleX = 0;
+        }
+        if (sampleZ == SAMPLES_PER_CHUNK) {
+            chunkZ++;
+            sampleZ = 0;
+        }
+        return this.columnSamples.getUnchecked(ChunkCoordinate.toKey(chunkX, chunkZ))[sampleZ * SAMPLES_PER_CHUNK + sampleX];
+    }
+
+    /**
+     * Terrain height (y of the topmost solid block) for every column of the chunk, x fastest.
+     */
+    private int[] computeHeights(int chunkX, int chunkZ) {
+        final double[] grid = new double[(SAMPLES_PER_CHUNK + 1) * (SAMPLES_PER_CHUNK + 1)];
+        for (int z = 0; z <= SAMPLES_PER_CHUNK; z++) {
+            for (int x = 0; x <= SAMPLES_PER_CHUNK; x++) {
+                grid[z * (SAMPLES_PER_CHUNK + 1) + x] = getSample(chunkX, chunkZ, x, z);
+            }
+        }
+
+        final int[] heights = new int[16 * 16];
+        for (int z = 0; z < 16; z++) {
+            final int sampleZ = z / SAMPLE_SPACING;
+            final double fz = (z % SAMPLE_SPACING) / (double) SAMPLE_SPACING;
+            for (int x = 0; x < 16; x++) {
+                final int sampleX = x / SAMPLE_SPACING;
+                final double fx = (x % SAMPLE_SPACING) / (double) SAMPLE_SPACING;
+                final int row = sampleZ * (SAMPLES_PER_CHUNK + 1) + sampleX;
+                final double north = grid[row] + (grid[row + 1] - grid[row]) * fx;
+                final double south = grid[row + SAMPLES_PER_CHUNK + 1] + (grid[row + SAMPLES_PER_CHUNK + 2] - grid[row + SAMPLES_PER_CHUNK + 1]) * fx;
+                heights[z * 16 + x] = Math.max(1, Math.min(250, (int) (north + (south - north) * fz)));
+            }
+        }
+        return heights;
+    }
+
+    private static void set(Chunk chunk, int x, int y, int z, int globalId) {
+        chunk.getSection(y >> 4).setGlobalId(((y & 15) << 8) | (z << 4) | x, globalId);
+    }
+
+    private static int get(Chunk chunk, int x, int y, int z) {
+        return chunk.getSection(y >> 4).getGlobalId(((y & 15) << 8) | (z << 4) | x);
+    }
+
+    @Override
+    public void generate(Chunk chunk) {
+        final int[] heights = computeHeights(chunk.getX(), chunk.getZ());
+        final int blockX = chunk.getX() << 4;
+        final int blockZ = chunk.getZ() << 4;
+
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                final int height = heights[z * 16 + x];
+                final boolean underwater = height < SEA_LEVEL;
+                final boolean beach = height >= SEA_LEVEL - 1 && height <= SEA_LEVEL + 1;
+                final int top = underwater ? GRAVEL : beach ? SAND : GRASS;
+                final int filler = underwater ? GRAVEL : beach ? SAND : DIRT;
+
+                set(chunk, x, 0, z, BEDROCK);
+                for (int y = 1; y <= height; y++) {
+                    final int depth = height - y;
+                    final int block = depth == 0 ? top : depth <= 3 ? filler : STONE;
+                    if (depth > 3 && y >= MIN_CAVE_Y && isCave(blockX + x, y, blockZ + z)) {
+                        continue;
+                    }
+                    set(chunk, x, y, z, block);
+                }
+                for (int y = height + 1; y <= SEA_LEVEL; y++) {
+                    set(chunk, x, y, z, WATER);
+                }
+            }
+        }
+
+        placeOres(chunk, heights);
+        chunk.setDirty(true);
+    }
+
+    // Where two noise fields are both close to zero they form long winding tunnels
+    private boolean isCave(int x, int y, int z) {
+        final double first = this.firstCaveNoise.noise(x / 48.0D, y / 24.0D, z / 48.0D);
+        if (first * first >= CAVE_THRESHOLD) {
+            return false;
+        }
+        final double second = this.secondCaveNoise.noise(x / 48.0D, y / 24.0D, z / 48.0D);
+        return first * first + second * second < CAVE_THRESHOLD;
+    }
+
+    private void placeOres(Chunk chunk, int[] heights) {
+        final Random random = new Random(this.seed ^ (chunk.getX() * 341873128712L + chunk.getZ() * 132897987541L));
+        placeOre(chunk, heights, random, Blocks.COAL_ORE, 20, 128, 12);
+        placeOre(chunk, heights, random, Blocks.IRON_ORE, 20, 64, 8);
+        placeOre(chunk, heights, random, Blocks.GOLD_ORE, 2, 32, 8);
+        placeOre(chunk, heights, random, Blocks.REDSTONE_ORE, 8, 16, 7);
+        placeOre(chunk, heights, random, Blocks.DIAMOND_ORE, 1, 16, 6);
+    }
+
+    private static void placeOre(Chunk chunk, int[] heights, Random random, BlockState ore, int veins, int maxY, int size) {
+        final int oreId = ore.toGlobalId();
+        for (int vein = 0; vein < veins; vein++) {
+            int x = random.nextInt(16);
+            int y = 1 + random.nextInt(maxY - 1);
+            int z = random.nextInt(16);
+            // A short random walk through stone, kept inside the chunk
+            for (int i = 0; i < size; i++) {
+                if (y < heights[z * 16 + x] && get(chunk, x, y, z) == STONE) {
+                    set(chunk, x, y, z, oreId);
+                }
+                x = Math.max(0, Math.min(15, x + random.nextInt(3) - 1));
+                y = Math.max(1, Math.min(255, y + random.nextInt(3) - 1));
+                z = Math.max(0, Math.min(15, z + random.nextInt(3) - 1));
+            }
+        }
+    }
+
+    @Override
+    public int getSpawnY(int blockX, int blockZ) {
+        final int[] heights = computeHeights(blockX >> 4, blockZ >> 4);
+        return Math.max(heights[(blockZ & 15) * 16 + (blockX & 15)], SEA_LEVEL) + 1;
+    }
+}
@@ -0,0 +1,46 @@
+package net.servzero.server.world.generator;
+
+import java.util.Random;
+
+/**
+ * Sum of {@link PerlinNoise} octaves, each with double the frequency and half the amplitude of
+ * the previous one, normalized back to roughly [-1, 1].
+ */
+public class OctaveNoise {
+    private final PerlinNoise[] octaves;
+    private final double normalization;
+
+    public OctaveNoise(Random random, int octaveCount) {
+        this.octaves = new PerlinNoise[octaveCount];
+        double amplitudeSum = 0.0D;
+        for (int i = 0; i < octaveCount; i++) {
+            this.octaves[i] = new PerlinNoise(random);
+            amplitudeSum += 1.0D / (1 << i);
+        }
+        this.normalization = 1.0D / amplitudeSum;
+    }
+
+    public double noise(double x, double z) {
+        double value = 0.0D;
+        double frequency = 1.0D;
+        double amplitude = 1.0D;
+        for (PerlinNoise octave : this.octaves) {
+            value += octave.noise(x * frequency, z * frequency) * amplitude;
+            frequency *= 2.0D;
+            amplitude *= 0.5D;
+        }
+        return value * this.normalization;
+    }
+
+    public double noise(double x, double y, double z) {
+        double value = 0.0D;
+        double frequency = 1.0D;
+        double amplitude = 1.0D;
+        for (PerlinNoise octave : this.octaves) {
+            value += octave.noise(x * frequency, y * frequency, z * frequency) * amplitude;
+            frequency *= 2.0D;
+            amplitude *= 0.5D;
+        }
+        return value * this.normalization;
+    }
+}
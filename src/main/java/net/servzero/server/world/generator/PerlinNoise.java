@@ -0,0 +1,84 @@
+package net.servzero.server.world.generator;
+
+import java.util.Random;
+
+/**
+ * Seeded improved Perlin noise (Ken Perlin, 2002) in two and three dimensions, returning values in
+ * roughly [-1, 1]. Immutable after construction, so one instance can be shared by all generator
+ * threads.
+ */
+public class PerlinNoise {
+    private final int[] permutation = new int[512];
+    private final double offsetX;
+    private final double offsetY;
+    private final double offsetZ;
+
+    public PerlinNoise(Random random) {
+        this.offsetX = random.nextDouble() * 256.0D;
+        this.offsetY = random.nextDouble() * 256.0D;
+        this.offsetZ = random.nextDouble() * 256.0D;
+        for (int i = 0; i < 256; i++) {
+            this.permutation[i] = i;
+        }
+        for (int i = 0; i < 256; i++) {
+            final int j = random.nextInt(256 - i) + i;
+            final int value = this.permutation[i];
+            this.permutation[i] = this.permutation[j];
+            this.permutation[j] = value;
+            this.permutation[i + 256] = this.permutation[i];
+        }
+    }
+
+    private static double fade(double t) {
+        return t * t * t * (t * (t * 6.0D - 15.0D) + 10.0D);
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    private static double grad(int hash, double x, double y, double z) {
+        final int h = hash & 15;
+        final double u = h < 8 ? x : y;
+        final double v = h < 4 ? y : (h == 12 || h == 14 ? x : z);
+        return ((h & 1) == 0 ? u : -u) + ((h & 2) == 0 ? v : -v);
+    }
+
+    public double noise(double x, double z) {
+        return noise(x, 0.0D, z);
+    }
+
+    public double noise(double x, double y, double z) {
+        x += this.offsetX;
+        y += this.offsetY;
+        z += this.offsetZ;
+        final int floorX = (int) Math.floor(x);
+        final int floorY = (int) Math.floor(y);
+        final int floorZ = (int) Math.floor(z);
+        final int X = floorX & 255;
+        final int Y = floorY & 255;
+        final int Z = floorZ & 255;
+        x -= floorX;
+        y -= floorY;
+        z -= floorZ;
+        final double u = fade(x);
+        final double v = fade(y);
+        final double w = fade(z);
+
+        final int[] p = this.permutation;
+        final int a = p[X] + Y;
+        final int aa = p[a] + Z;
+        final int ab = p[a + 1] + Z;
+        final int b = p[X + 1] + Y;
+        final int ba = p[b] + Z;
+        final int bb = p[b + 1] + Z;
+
+        return lerp(w,
+                lerp(v,
+                        lerp(u, grad(p[aa], x, y, z), grad(p[ba], x - 1, y, z)),
+                        lerp(u, grad(p[ab], x, y - 1, z), grad(p[bb], x - 1, y - 1, z))),
+                lerp(v,
+                        lerp(u, grad(p[aa + 1], x, y, z - 1), grad(p[ba + 1], x - 1, y, z - 1)),
+                        lerp(u, grad(p[ab + 1], x, y - 1, z - 1), grad(p[bb + 1], x - 1, y - 1, z - 1))));
+    }
+}
@@ -0,0 +1,323 @@
+package net.servzero.server.world.light;
+
+import net.servzero.server.world.chunk.Chunk;
+import net.servzero.server.world.chunk.ChunkSection;
+import net.servzero.server.world.chunk.NibbleArray;
+
+/**
+ * Propagates block and sky light with breadth-first searches over packed coordinates.
+ * <p>
+ * Raising light (a torch placed, a roof removed) floods outwards from the brighter cells. Lowering
+ * it first clears every cell whose light came from the changed cell, then lets the brighter cells
+ * along the border of the cleared area flood back in. Sky light of level 15 travels straight down
+ * through transparent blocks without losing strength.
+ * <p>
+ * Block changes are queued by {@link #queueUpdate(int, int, int)} and worked off in {@link #tick(long)}
+ * within a time budget; unfinished searches simply continue in the next tick. 1.12 clients compute
+ * their own light after block changes, so the stored values only matter for chunks sent or saved
+ * later, and nothing is sent to players from here.
+ */
+public class LightEngine {
+    public interface ChunkProvider {
+        Chunk getChunk(int chunkX, int chunkZ);
+    }
+
+    private static final int BLOCK = 0;
+    private static final int SKY = 1;
+    private static final int MAX_LIGHT = 15;
+    private static final int HEIGHT = 256;
+    // How many BFS steps run between two clock reads
+    private static final int STEPS_PER_TIME_CHECK = 256;
+
+    private static final int[] OFFSET_X = {0, 0, -1, 1, 0, 0};
+    private static final int[] OFFSET_Y = {-1, 1, 0, 0, 0, 0};
+    private static final int[] OFFSET_Z = {0, 0, 0, 0, -1, 1};
+    private static final int DOWN = 0;
+
+    private final ChunkProvider chunks;
+    private final LongQueue pendingUpdates = new LongQueue();
+    private final LongQueue[] increaseQueues = {new LongQueue(), new LongQueue()};
+    private final LongQueue[] decreaseQueues = {new LongQueue(), new LongQueue()};
+
+    public LightEngine(ChunkProvider chunks) {
+        this.chunks = chunks;
+    }
+
+    // x and z take 26 bits each, then 4 bits of light level and 8 bits of y
+    private static long pack(int x, int y, int z, int level) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | ((long) level << 8) | y;
+    }
+
+    private static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    private static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
+    private static int unpackLevel(long packed) {
+        return (int) (packed >>> 8) & 15;
+    }
+
+    private static int unpackY(long packed) {
+        return (int) packed & 255;
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private ChunkSection getSection(int x, int y, int z) {
+        final Chunk chunk = this.chunks.getChunk(x >> 4, z >> 4);
+        return chunk == null ? null : chunk.getSection(y >> 4);
+    }
+
+    private static NibbleArray getLightArray(ChunkSection section, int type) {
+        return type == SKY ? section.getSkyLight() : section.getBlockLight();
+    }
+
+    // -1 if the chunk is not loaded
+    private int getLight(int type, int x, int y, int z) {
+        final ChunkSection section = getSection(x, y, z);
+        return section == null ? -1 : getLightArray(section, type).get(getIndex(x, y, z));
+    }
+
+    private void setLight(int type, int x, int y, int z, int level) {
+        final Chunk chunk = this.chunks.getChunk(x >> 4, z >> 4);
+        getLightArray(chunk.getSection(y >> 4), type).set(getIndex(x, y, z), level);
+        chunk.invalidatePacketData();
+        chunk.setDirty(true);
+    }
+
+    private int getGlobalId(int x, int y, int z) {
+        final ChunkSection section = getSection(x, y, z);
+        return section == null ? 0 : section.getGlobalId(getIndex(x, y, z));
+    }
+
+    /**
+     * Queues a relight around a block that changed. Must be called from the main thread.
+     */
+    public void queueUpdate(int x, int y, int z) {
+        if (y >= 0 && y < HEIGHT) {
+            this.pendingUpdates.add(pack(x, y, z, 0));
+        }
+    }
+
+    public int getQueuedWork() {
+        return this.pendingUpdates.size()
+                + this.increaseQueues[BLOCK].size() + this.increaseQueues[SKY].size()
+                + this.decreaseQueues[BLOCK].size() + this.decreaseQueues[SKY].size();
+    }
+
+    /**
+     * Works off queued updates until everything is lit or the deadline ({@link System#nanoTime()})
+     * has passed. Decreases run before increases so nothing is re-lit from stale values.
+     */
+    public void tick(long deadline) {
+        this.process(deadline, true);
+    }
+
+    private void process(long deadline, boolean bounded) {
+        int steps = 0;
+        while (true) {
+            if (bounded && ++steps % STEPS_PER_TIME_CHECK == 0 && System.nanoTime() - deadline > 0) {
+                return;
+            }
+            if (!this.decreaseQueues[BLOCK].isEmpty()) {
+                decreaseStep(BLOCK);
+            } else if (!this.decreaseQueues[SKY].isEmpty()) {
+                decreaseStep(SKY);
+            } else if (!this.increaseQueues[BLOCK].isEmpty()) {
+                increaseStep(BLOCK);
+            } else if (!this.increaseQueues[SKY].isEmpty()) {
+                increaseStep(SKY);
+            } else if (!this.pendingUpdates.isEmpty()) {
+                final long packed = this.pendingUpdates.poll();
+                applyUpdate(BLOCK, unpackX(packed), unpackY(packed), unpackZ(packed));
+                applyUpdate(SKY, unpackX(packed), unpackY(packed), unpackZ(packed));
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void applyUpdate(int type, int x, int y, int z) {
+        final int old = getLight(type, x, y, z);
+        if (old < 0) {
+            return;
+        }
+
+        // Clear the cell and everything lit through it, then let the neighbours and the block itself
+        // light it up again
+        if (old > 0) {
+            setLight(type, x, y, z, 0);
+            this.decreaseQueues[type].add(pack(x, y, z, old));
+        }
+
+        final int globalId = getGlobalId(x, y, z);
+        if (type == BLOCK) {
+            final int emission = LightProperties.getEmission(globalId);
+            if (emission > 0) {
+                setLight(type, x, y, z, emission);
+                this.increaseQueues[type].add(pack(x, y, z, 0));
+            }
+        } else if (y == HEIGHT - 1 && LightProperties.getOpacity(globalId) == 0) {
+            setLight(type, x, y, z, MAX_LIGHT);
+            this.increaseQueues[type].add(pack(x, y, z, 0));
+        }
+
+        for (int direction = 0; direction < 6; direction++) {
+            final int ny = y + OFFSET_Y[direction];
+            if (ny < 0 || ny >= HEIGHT) {
+                continue;
+            }
+            final int nx = x + OFFSET_X[direction];
+            final int nz = z + OFFSET_Z[direction];
+            if (getLight(type, nx, ny, nz) > 0) {
+                this.increaseQueues[type].add(pack(nx, ny, nz, 0));
+            }
+        }
+    }
+
+    private void increaseStep(int type) {
+        final long packed = this.increaseQueues[type].poll();
+        final int x = unpackX(packed);
+        final int y = unpackY(packed);
+        final int z = unpackZ(packed);
+        // Read the current level; the cell may have been cleared since it was queued
+        final int level = getLight(type, x, y, z);
+        if (level <= 1) {
+            return;
+        }
+
+        for (int direction = 0; direction < 6; direction++) {
+            final int ny = y + OFFSET_Y[direction];
+            if (ny < 0 || ny >= HEIGHT) {
+                continue;
+            }
+            final int nx = x + OFFSET_X[direction];
+            final int nz = z + OFFSET_Z[direction];
+            final int neighbourLight = getLight(type, nx, ny, nz);
+            if (neighbourLight < 0 || neighbourLight >= level) {
+                continue;
+            }
+
+            final int opacity = LightProperties.getOpacity(getGlobalId(nx, ny, nz));
+            final int newLevel = type == SKY && direction == DOWN && level == MAX_LIGHT && opacity == 0
+                    ? MAX_LIGHT
+                    : level - Math.max(1, opacity);
+            if (newLevel > neighbourLight) {
+                setLight(type, nx, ny, nz, newLevel);
+                this.increaseQueues[type].add(pack(nx, ny, nz, 0));
+            }
+        }
+    }
+
+    private void decreaseStep(int type) {
+        final long packed = this.decreaseQueues[type].poll();
+        final int x = unpackX(packed);
+        final int y = unpackY(packed);
+        final int z = unpackZ(packed);
+        final int oldLevel = unpackLevel(packed);
+
+        for (int direction = 0; direction < 6; direction++) {
+            final int ny = y + OFFSET_Y[direction];
+            if (ny < 0 || ny >= HEIGHT) {
+                continue;
+            }
+            final int nx = x + OFFSET_X[direction];
+            final int nz = z + OFFSET_Z[direction];
+            final int neighbourLight = getLight(type, nx, ny, nz);
+            if (neighbourLight <= 0) {
+                continue;
+            }
+
+            final boolean litFromHere = neighbourLight < oldLevel
+                    || (type == SKY && direction == DOWN && oldLevel == MAX_LIGHT && neighbourLight == MAX_LIGHT);
+            if (litFromHere) {
+                setLight(type, nx, ny, nz, 0);
+                this.decreaseQueues[type].add(pack(nx, ny, nz, neighbourLight));
+                if (type == BLOCK) {
+                    final int emission = LightProperties.getEmission(getGlobalId(nx, ny, nz));
+                    if (emission > 0) {
+                        setLight(type, nx, ny, nz, emission);
+                        this.increaseQueues[type].add(pack(nx, ny, nz, 0));
+                    }
+                }
+            } else {
+                // Lit from somewhere else; flood back into the cleared area from here
+                this.increaseQueues[type].add(pack(nx, ny, nz, 0));
+            }
+        }
+    }
+
+    /**
+     * Computes the initial light of a chunk that nobody else can see yet, e.g. right after it was
+     * generated. Light from neighbouring chunks is not taken into account. Safe to call off the
+     * main thread.
+     */
+    public static void initialize(Chunk chunk) {
+        final LightEngine engine = new LightEngine((chunkX, chunkZ) ->
+                chunkX == chunk.getX() && chunkZ == chunk.getZ() ? chunk : null);
+        final int baseX = chunk.getX() << 4;
+        final int baseZ = chunk.getZ() << 4;
+
+        // Sky light falls straight down until the first block that absorbs some of it
+        final int[] openSkyBottom = new int[16 * 16];
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                int level = MAX_LIGHT;
+                int bottom = HEIGHT;
+                for (int y = HEIGHT - 1; y >= 0; y--) {
+                    final ChunkSection section = chunk.getSection(y >> 4);
+                    final int index = getIndex(x, y, z);
+                    if (level > 0) {
+                        final int opacity = LightProperties.getOpacity(section.getGlobalId(index));
+                        // Below the first partial absorber light fades like anywhere else
+                        level = Math.max(0, level - (opacity == 0 && level < MAX_LIGHT ? 1 : opacity));
+                    }
+                    section.getSkyLight().set(index, level);
+                    if (level == MAX_LIGHT) {
+                        bottom = y;
+                    } else if (level > 1) {
+                        // Dimmed light below water or leaves still spreads sideways
+                        engine.increaseQueues[SKY].add(pack(baseX + x, y, baseZ + z, 0));
+                    }
+                }
+                openSkyBottom[z * 16 + x] = bottom;
+            }
+        }
+
+        // Only open sky cells next to a column that is covered higher up can spread light sideways
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                final int bottom = openSkyBottom[z * 16 + x];
+                int top = bottom;
+                if (x > 0) top = Math.max(top, openSkyBottom[z * 16 + x - 1]);
+                if (x < 15) top = Math.max(top, openSkyBottom[z * 16 + x + 1]);
+                if (z > 0) top = Math.max(top, openSkyBottom[(z - 1) * 16 + x]);
+                if (z < 15) top = Math.max(top, openSkyBottom[(z + 1) * 16 + x]);
+                for (int y = bottom; y < top; y++) {
+                    engine.increaseQueues[SKY].add(pack(baseX + x, y, baseZ + z, 0));
+                }
+            }
+        }
+
+        for (int sectionY = 0; sectionY < chunk.getSectionCount(); sectionY++) {
+            final ChunkSection section = chunk.getSection(sectionY);
+            if (!section.hasBlocks()) {
+                continue;
+            }
+            for (int index = 0; index < 16 * 16 * 16; index++) {
+                final int emission = LightProperties.getEmission(section.getGlobalId(index));
+                if (emission > 0) {
+                    section.getBlockLight().set(index, emission);
+                    engine.increaseQueues[BLOCK].add(pack(baseX + (index & 15), (sectionY << 4) | (index >> 8), baseZ + ((index >> 4) & 15), 0));
+                }
+            }
+        }
+
+        engine.process(0L, false);
+    }
+}
@@ -0,0 +1,58 @@
+package net.servzero.server.world.light;
+
+import java.util.Arrays;
+
+/**
+ * How much light each block id absorbs and emits. Blocks not listed here are fully opaque and
+ * emit nothing.
+ */
+public class LightProperties {
+    private static final int BLOCK_IDS = 4096;
+    private static final byte[] OPACITY = new byte[BLOCK_IDS];
+    private static final byte[] EMISSION = new byte[BLOCK_IDS];
+
+    static {
+        Arrays.fill(OPACITY, (byte) 15);
+
+        // Fully transparent: air, plants, glass, rails, torches, signs, barrier, ...
+        for (int id : new int[]{0, 6, 20, 26, 27, 28, 31, 32, 37, 38, 39, 40, 50, 51, 55, 59, 63, 64, 65, 66, 68, 69, 70, 71, 72,
+                75, 76, 77, 78, 83, 85, 90, 92, 93, 94, 95, 96, 101, 102, 104, 105, 106, 107, 111, 113, 115, 119, 131, 132,
+                140, 141, 142, 143, 147, 148, 149, 150, 157, 160, 166, 167, 171, 175, 176, 177, 183, 184, 185, 186, 187,
+                188, 189, 190, 191, 192, 193, 194, 195, 196, 197, 198, 207}) {
+            OPACITY[id] = 0;
+        }
+        // Leaves, cobweb
+        OPACITY[18] = 1;
+        OPACITY[161] = 1;
+        OPACITY[30] = 1;
+        // Water and ice
+        OPACITY[8] = 3;
+        OPACITY[9] = 3;
+        OPACITY[79] = 3;
+        OPACITY[212] = 3;
+
+        EMISSION[10] = 15; // Flowing lava
+        EMISSION[11] = 15; // Lava
+        EMISSION[50] = 14; // Torch
+        EMISSION[51] = 15; // Fire
+        EMISSION[62] = 13; // Lit furnace
+        EMISSION[76] = 7; // Redstone torch
+        EMISSION[89] = 15; // Glowstone
+        EMISSION[90] = 11; // Portal
+        EMISSION[91] = 15; // Jack o'lantern
+        EMISSION[119] = 15; // End portal
+        EMISSION[124] = 15; // Lit redstone lamp
+        EMISSION[138] = 15; // Beacon
+        EMISSION[169] = 15; // Sea lantern
+        EMISSION[198] = 14; // End rod
+        EMISSION[213] = 3; // Magma block
+    }
+
+    public static int getOpacity(int globalId) {
+        return OPACITY[(globalId >> 4) & (BLOCK_IDS - 1)];
+    }
+
+    public static int getEmission(int globalId) {
+        return EMISSION[(globalId >> 4) & (BLOCK_IDS - 1)];
+    }
+}
@@ -0,0 +1,48 @@
+package net.servzero.server.world.light;
+
+import java.util.Arrays;
+
+/**
+ * Growable FIFO ring buffer of primitive longs, so the light BFS never boxes a coordinate.
+ */
+class LongQueue {
+    private long[] elements = new long[256];
+    private int head;
+    private int tail;
+
+    boolean isEmpty() {
+        return this.head == this.tail;
+    }
+
+    int size() {
+        return (this.tail - this.head) & (this.elements.length - 1);
+    }
+
+    void add(long value) {
+        this.elements[this.tail] = value;
+        this.tail = (this.tail + 1) & (this.elements.length - 1);
+        if (this.tail == this.head) {
+            grow();
+        }
+    }
+
+    long poll() {
+        final long value = this.elements[this.head];
+        this.head = (this.head + 1) & (this.elements.length - 1);
+        return value;
+    }
+
+    void clear() {
+        this.head = 0;
+        this.tail = 0;
+    }
+
+    private void grow() {
+        final int length = this.elements.length;
+        final long[] grown = Arrays.copyOf(this.elements, length * 2);
+        // The queue wrapped around; move the part before the head behind the old end
+        System.arraycopy(this.elements, 0, grown, length, this.head);
+        this.tail = this.head + length;
+        this.elements = grown;
+    }
+}
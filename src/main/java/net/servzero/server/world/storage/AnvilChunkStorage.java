@@ -0,0 +1,310 @@
+package net.servzero.server.world.storage;
+
+import com.flowpowered.nbt.ByteArrayTag;
+import com.flowpowered.nbt.ByteTag;
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.IntArrayTag;
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongTag;
+import com.flowpowered.nbt.Tag;
+import com.flowpowered.nbt.stream.NBTInputStream;
+import com.flowpowered.nbt.stream.NBTOutputStream;
+import net.servzero.logger.Logger;
+import net.servzero.server.world.World;
+import net.servzero.server.world.chunk.Chunk;
+import net.servzero.server.world.chunk.ChunkSection;
+import net.servzero.server.world.chunk.NibbleArray;
+import net.servzero.server.world.light.LightEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Reads and writes chunks in the 1.12 Anvil format: {@code region/r.<x>.<z>.mca} files holding
+ * zlib compressed NBT with one Blocks/Add/Data entry per non-empty section. Region files are kept
+ * open in a small LRU and closed when evicted. Safe to use from several threads.
+ */
+public class AnvilChunkStorage implements AutoCloseable {
+    // 1.12.2
+    private static final int DATA_VERSION = 1343;
+    private static final int MAX_OPEN_REGIONS = Integer.getInteger("servzero.region.max-open", 64);
+    private static final int BLOCKS_PER_SECTION = 16 * 16 * 16;
+    private static final int BIOME_BYTES = 256;
+
+    private final Path regionDirectory;
+    private final LinkedHashMap<Long, RegionFile> regions = new LinkedHashMap<>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RegionFile> eldest) {
+            if (size() <= MAX_OPEN_REGIONS) {
+                return false;
+            }
+            closeRegion(eldest.getValue());
+            return true;
+        }
+    };
+
+    public AnvilChunkStorage(Path worldDirectory) {
+        this.regionDirectory = worldDirectory.resolve("region");
+    }
+
+    private static void closeRegion(RegionFile region) {
+        try {
+            region.close();
+        } catch (IOException exception) {
+            Logger.error("Could not close region file " + region.getPath() + ": " + exception);
+        }
+    }
+
+    private synchronized RegionFile getRegion(int chunkX, int chunkZ, boolean create) throws IOException {
+        final int regionX = chunkX >> 5;
+        final int regionZ = chunkZ >> 5;
+        final long key = ((long) regionZ << 32) | (regionX & 0xFFFFFFFFL);
+        RegionFile region = this.regions.get(key);
+        if (region == null) {
+            final Path path = this.regionDirectory.resolve("r." + regionX + "." + regionZ + ".mca");
+            if (!create && !Files.exists(path)) {
+                return null;
+            }
+            Files.createDirectories(this.regionDirectory);
+            region = new RegionFile(path);
+            this.regions.put(key, region);
+        }
+        return region;
+    }
+
+    /**
+     * Reads the chunk's sectors into memory and returns a stream that decompresses them as it is
+     * consumed, or null if the chunk was never saved. Only this part touches the disk.
+     */
+    public DataInputStream readRaw(int chunkX, int chunkZ) throws IOException {
+        final RegionFile region = getRegion(chunkX, chunkZ, false);
+        return region == null ? null : region.read(chunkX, chunkZ);
+    }
+
+    /**
+     * Decompresses and parses a stream returned by {@link #readRaw(int, int)}.
+     */
+    public static CompoundTag parse(DataInputStream input) throws IOException {
+        try (input) {
+            // The region file already picked the decompressor, so the NBT stream is read raw
+            final Tag<?> tag = new NBTInputStream(input, false).readTag();
+            if (!(tag instanceof CompoundTag)) {
+                throw new IOException("Chunk data is not a compound tag");
+            }
+            return (CompoundTag) tag;
+        }
+    }
+
+    /**
+     * Serializes and zlib compresses a chunk's NBT for {@link #writeCompressed(int, int, byte[])}.
+     */
+    public static byte[] compress(CompoundTag tag) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        final Deflater deflater = new Deflater();
+        try (NBTOutputStream output = new NBTOutputStream(new DeflaterOutputStream(bytes, deflater), false)) {
+            output.writeTag(tag);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    public void writeCompressed(int chunkX, int chunkZ, byte[] data) throws IOException {
+        getRegion(chunkX, chunkZ, true).write(chunkX, chunkZ, RegionFile.COMPRESSION_ZLIB, data, data.length);
+    }
+
+    /**
+     * Reads and decompresses the chunk's NBT, or returns null if it was never saved.
+     */
+    public CompoundTag read(int chunkX, int chunkZ) throws IOException {
+        final DataInputStream input = readRaw(chunkX, chunkZ);
+        return input == null ? null : parse(input);
+    }
+
+    /**
+     * Compresses the chunk's NBT and writes it to its region file.
+     */
+    public void write(int chunkX, int chunkZ, CompoundTag tag) throws IOException {
+        writeCompressed(chunkX, chunkZ, compress(tag));
+    }
+
+    public Chunk load(World world, int chunkX, int chunkZ) throws IOException {
+        final CompoundTag tag = read(chunkX, chunkZ);
+        return tag == null ? null : decode(world, chunkX, chunkZ, tag);
+    }
+
+    public void save(Chunk chunk) throws IOException {
+        write(chunk.getX(), chunk.getZ(), encode(chunk));
+        chunk.setDirty(false);
+    }
+
+    /**
+     * Copies the chunk into an NBT tree. The result shares no state with the chunk, so it can be
+     * compressed and written on another thread.
+     */
+    public static CompoundTag encode(Chunk chunk) {
+        final List<CompoundTag> sections = new ArrayList<>();
+        final int[] heightMap = new int[16 * 16];
+        for (int sectionY = 0; sectionY < chunk.getSectionCount(); sectionY++) {
+            final ChunkSection section = chunk.getSection(sectionY);
+            if (section.hasBlocks()) {
+                sections.add(encodeSection(section, heightMap));
+            }
+        }
+
+        final CompoundMap level = new CompoundMap();
+        level.put(new IntTag("xPos", chunk.getX()));
+        level.put(new IntTag("zPos", chunk.getZ()));
+        level.put(new LongTag("LastUpdate", 0L));
+        level.put(new LongTag("InhabitedTime", 0L));
+        level.put(new ByteTag("TerrainPopulated", (byte) 1));
+        level.put(new ByteTag("LightPopulated", (byte) 1));
+        level.put(new ByteArrayTag("Biomes", new byte[BIOME_BYTES]));
+        level.put(new IntArrayTag("HeightMap", heightMap));
+        level.put(new ListTag<>("Sections", CompoundTag.class, sections));
+        level.put(new ListTag<>("Entities", CompoundTag.class, Collections.emptyList()));
+        level.put(new ListTag<>("TileEntities", CompoundTag.class, Collections.emptyList()));
+
+        final CompoundMap root = new CompoundMap();
+        root.put(new IntTag("DataVersion", DATA_VERSION));
+        root.put(new CompoundTag("Level", level));
+        return new CompoundTag("", root);
+    }
+
+    private static CompoundTag encodeSection(ChunkSection section, int[] heightMap) {
+        final byte[] blocks = new byte[BLOCKS_PER_SECTION];
+        final NibbleArray data = new NibbleArray();
+        final NibbleArray add = new NibbleArray();
+        boolean hasAdd = false;
+
+        for (int index = 0; index < BLOCKS_PER_SECTION; index++) {
+            final int globalId = section.getGlobalId(index);
+            if (globalId == 0) {
+                continue;
+            }
+            final int blockId = globalId >> 4;
+            blocks[index] = (byte) blockId;
+            data.set(index, globalId & 15);
+            if (blockId > 255) {
+                add.set(index, blockId >> 8);
+                hasAdd = true;
+            }
+
+            // Height of the highest non-air block per column, plus one
+            final int column = index & 0xFF;
+            final int height = (section.getY() << 4) + (index >> 8) + 1;
+            if (height > heightMap[column]) {
+                heightMap[column] = height;
+            }
+        }
+
+        final CompoundMap map = new CompoundMap();
+        map.put(new ByteTag("Y", (byte) section.getY()));
+        map.put(new ByteArrayTag("Blocks", blocks));
+        map.put(new ByteArrayTag("Data", data.getData()));
+        if (hasAdd) {
+            map.put(new ByteArrayTag("Add", add.getData()));
+        }
+        // Copies, as the tag may be written on another thread while the light engine keeps working
+        map.put(new ByteArrayTag("BlockLight", section.getBlockLight().getData().clone()));
+        map.put(new ByteArrayTag("SkyLight", section.getSkyLight().getData().clone()));
+        return new CompoundTag("", map);
+    }
+
+    /**
+     * Builds a chunk from its NBT. Does not touch any shared state, so it may run off the main thread.
+     */
+    public static Chunk decode(World world, int chunkX, int chunkZ, CompoundTag tag) throws IOException {
+        final CompoundMap level = getCompound(tag.getValue(), "Level");
+        final Chunk chunk = new Chunk(world, chunkX, chunkZ);
+
+        final Tag<?> sectionsTag = level.get("Sections");
+        if (sectionsTag instanceof ListTag) {
+            for (Object element : ((ListTag<?>) sectionsTag).getValue()) {
+                if (element instanceof CompoundTag) {
+                    decodeSection(chunk, ((CompoundTag) element).getValue());
+                }
+            }
+        }
+
+        // Chunks saved before light was stored, or by other tools that skipped lighting
+        final Tag<?> lightPopulated = level.get("LightPopulated");
+        if (!(lightPopulated instanceof ByteTag) || ((ByteTag) lightPopulated).getValue() == 0) {
+            LightEngine.initialize(chunk);
+        }
+        chunk.compactSections();
+        chunk.setDirty(false);
+        return chunk;
+    }
+
+    private static void decodeSection(Chunk chunk, CompoundMap map) throws IOException {
+        final Tag<?> yTag = map.get("Y");
+        if (yTag == null || !(yTag.getValue() instanceof Number)) {
+            throw new IOException("Chunk " + chunk.getX() + "," + chunk.getZ() + " has a section without a numeric Y tag");
+        }
+        final int sectionY = ((Number) yTag.getValue()).intValue();
+        if (sectionY < 0 || sectionY >= chunk.getSectionCount()) {
+            return;
+        }
+
+        final byte[] blocks = getByteArray(map, "Blocks", BLOCKS_PER_SECTION);
+        final NibbleArray data = new NibbleArray(getByteArray(map, "Data", NibbleArray.BYTES));
+        final NibbleArray add = map.containsKey("Add") ? new NibbleArray(getByteArray(map, "Add", NibbleArray.BYTES)) : null;
+        final ChunkSection section = chunk.getSection(sectionY);
+        for (int index = 0; index < BLOCKS_PER_SECTION; index++) {
+            int blockId = blocks[index] & 0xFF;
+            if (add != null) {
+                blockId |= add.get(index) << 8;
+            }
+            final int globalId = (blockId << 4) | data.get(index);
+            if (globalId != 0) {
+                section.setGlobalId(index, globalId);
+            }
+        }
+
+        if (map.containsKey("BlockLight") && map.containsKey("SkyLight")) {
+            System.arraycopy(getByteArray(map, "BlockLight", NibbleArray.BYTES), 0, section.getBlockLight().getData(), 0, NibbleArray.BYTES);
+            System.arraycopy(getByteArray(map, "SkyLight", NibbleArray.BYTES), 0, section.getSkyLight().getData(), 0, NibbleArray.BYTES);
+        }
+    }
+
+    private static CompoundMap getCompound(CompoundMap map, String name) throws IOException {
+        final Tag<?> tag = map.get(name);
+        if (!(tag instanceof CompoundTag)) {
+            throw new IOException("Missing compound tag " + name);
+        }
+        return ((CompoundTag) tag).getValue();
+    }
+
+    private static byte[] getByteArray(CompoundMap map, String name, int length) throws IOException {
+        final Tag<?> tag = map.get(name);
+        if (!(tag instanceof ByteArrayTag) || ((ByteArrayTag) tag).getValue().length != length) {
+            throw new IOException("Missing or malformed byte array " + name);
+        }
+        return ((ByteArrayTag) tag).getValue();
+    }
+
+    public synchronized void flush() throws IOException {
+        for (RegionFile region : this.regions.values()) {
+            region.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        this.regions.values().forEach(AnvilChunkStorage::closeRegion);
+        this.regions.clear();
+    }
+}
@@ -0,0 +1,187 @@
+package net.servzero.server.world.storage;
+
+import com.flowpowered.nbt.CompoundTag;
+import net.servzero.logger.Logger;
+import net.servzero.server.world.World;
+import net.servzero.server.world.chunk.Chunk;
+import net.servzero.server.world.chunk.ChunkCoordinate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link AnvilChunkStorage} off the main thread. Disk access happens on a single I/O thread,
+ * while NBT parsing, decoding and compression run on a small worker pool, so a slow disk never
+ * holds up decoding and neither holds up the tick.
+ * <p>
+ * Saves are coalesced per chunk: only the most recent snapshot of a chunk is written, no matter
+ * how often it was saved while a write was queued. Loads of a chunk with a pending save are served
+ * from that snapshot, so they never read stale data from disk. A snapshot stays pending until it
+ * was written; failed writes are retried with backoff.
+ */
+public class AsyncChunkStorage {
+    private static final int WORKER_THREADS = Integer.getInteger("servzero.chunks.worker-threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    // A failed write is retried after one second, doubling up to a minute
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final AnvilChunkStorage storage;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(threadFactory("Chunk I/O thread"));
+    private final ExecutorService workerPool = Executors.newFixedThreadPool(WORKER_THREADS, threadFactory("Chunk worker"));
+    // Latest unsaved snapshot per chunk; an entry is removed only after exactly that snapshot was written
+    private final ConcurrentHashMap<Long, CompoundTag> pendingSaves = new ConcurrentHashMap<>();
+
+    public AsyncChunkStorage(AnvilChunkStorage storage) {
+        this.storage = storage;
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        final AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + " #" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public ExecutorService getWorkerPool() {
+        return workerPool;
+    }
+
+    public int getPendingSaveCount() {
+        return this.pendingSaves.size();
+    }
+
+    /**
+     * Loads a chunk from disk. The future completes on a worker thread with the decoded chunk, or
+     * with null if the chunk was never saved.
+     */
+    public CompletableFuture<Chunk> load(World world, int chunkX, int chunkZ) {
+        final CompoundTag pending = this.pendingSaves.get(ChunkCoordinate.toKey(chunkX, chunkZ));
+        if (pending != null) {
+            return CompletableFuture.supplyAsync(() -> decode(world, chunkX, chunkZ, pending), this.workerPool);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.storage.readRaw(chunkX, chunkZ);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }, this.ioExecutor).thenApplyAsync(input -> {
+            if (input == null) {
+                return null;
+            }
+            try {
+                return decode(world, chunkX, chunkZ, AnvilChunkStorage.parse(input));
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }, this.workerPool);
+    }
+
+    private static Chunk decode(World world, int chunkX, int chunkZ, CompoundTag tag) {
+        try {
+            return AnvilChunkStorage.decode(world, chunkX, chunkZ, tag);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Snapshots the chunk and queues it for writing. Must be called from the main thread; the
+     * snapshot is the only part that touches the chunk.
+     */
+    public void save(Chunk chunk) {
+        final long key = chunk.getKey();
+        final CompoundTag tag = AnvilChunkStorage.encode(chunk);
+        chunk.setDirty(false);
+
+        // A write is already queued for this chunk; it will pick up the newer snapshot
+        if (this.pendingSaves.put(key, tag) != null) {
+            return;
+        }
+        this.write(key, chunk.getX(), chunk.getZ(), 0);
+    }
+
+    private void write(long key, int chunkX, int chunkZ, int failures) {
+        final CompoundTag tag = this.pendingSaves.get(key);
+        if (tag == null) {
+            return;
+        }
+
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return AnvilChunkStorage.compress(tag);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }, this.workerPool).thenAcceptAsync(data -> {
+            try {
+                this.storage.writeCompressed(chunkX, chunkZ, data);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }, this.ioExecutor).whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                // Keep the snapshot, the chunk is no longer dirty and nothing else would save it
+                final long delay = Math.min(RETRY_DELAY_MILLIS << Math.min(failures, 6), MAX_RETRY_DELAY_MILLIS);
+                Logger.error("Could not save chunk " + chunkX + "," + chunkZ + ", retrying in " + delay + "ms: " + throwable);
+                CompletableFuture.runAsync(() -> this.write(key, chunkX, chunkZ, failures + 1),
+                        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, this.ioExecutor));
+                return;
+            }
+            // Write again if a newer snapshot arrived in the meantime
+            if (!this.pendingSaves.remove(key, tag)) {
+                this.write(key, chunkX, chunkZ, 0);
+            }
+        });
+    }
+
+    public void flush() {
+        try {
+            this.ioExecutor.submit(() -> {
+                this.storage.flush();
+                return null;
+            }).get();
+        } catch (Exception exception) {
+            Logger.error("Could not flush region files: " + exception);
+        }
+    }
+
+    /**
+     * Waits for every queued save, then closes the region files.
+     */
+    public void close() {
+        final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (!this.pendingSaves.isEmpty()) {
+            if (System.nanoTime() - deadline > 0) {
+                Logger.warn("Timed out waiting for chunk saves, " + this.pendingSaves.size() + " chunk(s) were not saved");
+                break;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        this.workerPool.shutdown();
+        this.ioExecutor.shutdown();
+        try {
+            this.ioExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        this.storage.close();
+    }
+}
@@ -0,0 +1,194 @@
+package net.servzero.server.world.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A single Anvil region file holding 32x32 chunks. The first two 4 KiB sectors are the header: one
+ * int per chunk with its sector offset (upper 24 bits) and sector count (lower 8 bits), followed by
+ * one int per chunk with the last save time in epoch seconds. Every chunk is stored as a big-endian
+ * length, a compression type and the compressed NBT, padded to whole sectors.
+ * <p>
+ * The header is memory mapped, chunk payloads go through positional {@link FileChannel} reads and
+ * writes. All methods are synchronized so the file can be shared by I/O threads.
+ */
+public class RegionFile implements AutoCloseable {
+    public static final int SECTOR_BYTES = 4096;
+    public static final int CHUNKS_PER_REGION = 32 * 32;
+    public static final byte COMPRESSION_GZIP = 1;
+    public static final byte COMPRESSION_ZLIB = 2;
+
+    private static final int HEADER_BYTES = SECTOR_BYTES * 2;
+    private static final int HEADER_SECTORS = 2;
+    // The sector count is a single byte, so a chunk may use at most 1 MiB
+    private static final int MAX_SECTORS_PER_CHUNK = 255;
+    // Length int and compression type byte in front of every chunk
+    private static final int CHUNK_HEADER_BYTES = 5;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final IntBuffer locations;
+    private final IntBuffer timestamps;
+    private final BitSet usedSectors = new BitSet();
+
+    public RegionFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // Mapping past the end grows the file, so a new region gets an all-zero header for free
+        this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        this.locations = this.header.duplicate().position(0).limit(SECTOR_BYTES).slice().asIntBuffer();
+        this.timestamps = this.header.duplicate().position(SECTOR_BYTES).limit(HEADER_BYTES).slice().asIntBuffer();
+
+        this.usedSectors.set(0, HEADER_SECTORS);
+        final long fileSectors = (this.channel.size() + SECTOR_BYTES - 1) / SECTOR_BYTES;
+        for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+            final int location = this.locations.get(i);
+            final int offset = location >>> 8;
+            final int count = location & 0xFF;
+            if (location == 0) {
+                continue;
+            }
+            if (offset < HEADER_SECTORS || offset + count > fileSectors) {
+                // Points into the header or past the end of the file; forget it instead of reading garbage
+                this.locations.put(i, 0);
+                continue;
+            }
+            this.usedSectors.set(offset, offset + count);
+        }
+    }
+
+    private static int getIndex(int chunkX, int chunkZ) {
+        return (chunkX & 31) | ((chunkZ & 31) << 5);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized boolean hasChunk(int chunkX, int chunkZ) {
+        return this.locations.get(getIndex(chunkX, chunkZ)) != 0;
+    }
+
+    public synchronized int getTimestamp(int chunkX, int chunkZ) {
+        return this.timestamps.get(getIndex(chunkX, chunkZ));
+    }
+
+    /**
+     * Returns a stream over the decompressed NBT of the chunk, or null if the chunk was never saved.
+     */
+    public synchronized DataInputStream read(int chunkX, int chunkZ) throws IOException {
+        final int location = this.locations.get(getIndex(chunkX, chunkZ));
+        if (location == 0) {
+            return null;
+        }
+
+        final int offset = location >>> 8;
+        final int count = location & 0xFF;
+        final ByteBuffer buffer = ByteBuffer.allocate(count * SECTOR_BYTES);
+        long position = (long) offset * SECTOR_BYTES;
+        while (buffer.hasRemaining()) {
+            final int read = this.channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        buffer.flip();
+
+        if (buffer.remaining() < CHUNK_HEADER_BYTES) {
+            throw new IOException("Truncated chunk " + chunkX + "," + chunkZ + " in " + this.path);
+        }
+        final int length = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid chunk length " + length + " for " + chunkX + "," + chunkZ + " in " + this.path);
+        }
+
+        final byte compression = buffer.get();
+        final InputStream data = new ByteArrayInputStream(buffer.array(), buffer.position(), length - 1);
+        switch (compression) {
+            case COMPRESSION_GZIP:
+                return new DataInputStream(new GZIPInputStream(data));
+            case COMPRESSION_ZLIB:
+                return new DataInputStream(new InflaterInputStream(data));
+            default:
+                throw new IOException("Unknown compression type " + compression + " for " + chunkX + "," + chunkZ + " in " + this.path);
+        }
+    }
+
+    /**
+     * Stores already compressed chunk data. The chunk is rewritten in place if it still fits into
+     * its sectors, otherwise it moves to the first free run of sectors or to the end of the file.
+     */
+    public synchronized void write(int chunkX, int chunkZ, byte compression, byte[] data, int length) throws IOException {
+        final int sectors = (length + CHUNK_HEADER_BYTES + SECTOR_BYTES - 1) / SECTOR_BYTES;
+        if (sectors > MAX_SECTORS_PER_CHUNK) {
+            throw new IOException("Chunk " + chunkX + "," + chunkZ + " is too large (" + length + " bytes)");
+        }
+
+        final int index = getIndex(chunkX, chunkZ);
+        final int location = this.locations.get(index);
+        int offset = location >>> 8;
+        final int oldCount = location & 0xFF;
+
+        if (location == 0 || sectors > oldCount) {
+            if (location != 0) {
+                this.usedSectors.clear(offset, offset + oldCount);
+            }
+            offset = this.allocate(sectors);
+        } else if (sectors < oldCount) {
+            this.usedSectors.clear(offset + sectors, offset + oldCount);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(sectors * SECTOR_BYTES);
+        buffer.putInt(length + 1);
+        buffer.put(compression);
+        buffer.put(data, 0, length);
+        buffer.clear();
+        long position = (long) offset * SECTOR_BYTES;
+        while (buffer.hasRemaining()) {
+            position += this.channel.write(buffer, position);
+        }
+
+        this.locations.put(index, (offset << 8) | sectors);
+        this.timestamps.put(index, (int) (System.currentTimeMillis() / 1000L));
+    }
+
+    private int allocate(int sectors) {
+        int start = this.usedSectors.nextClearBit(HEADER_SECTORS);
+        while (true) {
+            final int end = this.usedSectors.nextSetBit(start);
+            if (end < 0 || end - start >= sectors) {
+                this.usedSectors.set(start, start + sectors);
+                return start;
+            }
+            start = this.usedSectors.nextClearBit(end);
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        this.header.force();
+        this.channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}